@@ -0,0 +1,256 @@
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.jena.atlas.io.NullOutputStream;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.lang.CollectorStreamTriples;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.riot.system.StreamRDFWriter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Hot paths of the parser, prepared on one bundled dataset (e.g. openSSH/OpenSSH_2k_A).
+ * <p>
+ * JMH does not accept benchmarks in the default package, and classes in a named package cannot use the parser
+ * classes, so the benchmarks in the benchmark package get these targets once via reflection at setup and only
+ * call the returned suppliers while measuring.
+ */
+public class BenchmarkTargets {
+
+    /**
+     * Keeps the last triple, so that the work of the emitting code cannot be optimized away
+     */
+    private static class LastTripleSink extends StreamRDFBase {
+        Triple last;
+
+        @Override
+        public void triple(Triple triple) {
+            last = triple;
+        }
+    }
+
+    private final Path data;
+    private final List<CSVRecord> records;
+    private final LogLineBatch batch;
+    private final Map<String, LogLine> examples = new HashMap<>();
+    private final TemplateRegistry templateRegistry = new TemplateRegistry();
+    private final TimestampParser timestampParser = new TimestampParser();
+    private final List<Triple> triples;
+    private int next;
+
+    /**
+     * @param dataset path below ./input without the .log_structured.csv / .log_templates.csv suffix
+     * @throws Exception
+     */
+    public BenchmarkTargets(String dataset) throws Exception {
+        data = Paths.get("input", dataset + ".log_structured.csv");
+        try (Reader reader = Files.newBufferedReader(data, StandardCharsets.UTF_8)) {
+            records = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(reader).getRecords();
+        }
+        String source = LogSource.name(data);
+        batch = LogLineBatch.fromOpenSSH(records, source, new LogLineBatch.Dictionaries());
+        for (CSVRecord record : records)
+            examples.putIfAbsent(record.get(7), LogLine.fromOpenSSH(record));
+
+        // annotate all templates of the dataset, like Main.annotateTemplates
+        PatternSet patterns = new PatternSet(Main.defaultPatterns());
+        try (Reader reader = Files.newBufferedReader(Paths.get("input", dataset + ".log_templates.csv"), StandardCharsets.UTF_8)) {
+            for (CSVRecord csvTemplate : CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(reader)) {
+                LogLine example = examples.get(csvTemplate.get(0));
+                if (example == null)
+                    continue;
+
+                Template template = new Template(csvTemplate.get(0), csvTemplate.get(1));
+                template.hash = Main.hashTemplate(template.TemplateContent);
+                Main.processTemplateParameters(patterns, template, example);
+                templateRegistry.add(template);
+                templateRegistry.mapEventId(source, template.TemplateId, template.hash);
+            }
+        }
+
+        CollectorStreamTriples collector = new CollectorStreamTriples();
+        parseAll(collector);
+        triples = new ArrayList<>(collector.getCollected());
+    }
+
+    private int nextRow() {
+        int row = next;
+        next = (next + 1) % records.size();
+        return row;
+    }
+
+    private void parseAll(StreamRDF output) {
+        for (int row = 0; row < batch.size; row++)
+            Main.parseLogLine(batch, row, templateRegistry, output);
+    }
+
+    /**
+     * @return LogLine.fromOpenSSH of the next record
+     */
+    public Supplier<Object> fromOpenSSH() {
+        return () -> LogLine.fromOpenSSH(records.get(nextRow()));
+    }
+
+    /**
+     * @param reader mapped for the memory-mapped reader (MappedCsvReader), anything else for commons-csv
+     * @return the whole structured dataset read and decoded into LogLineBatches of 1000 lines
+     */
+    public Supplier<Object> readCsv(String reader) {
+        LogLineBatch.Dictionaries dictionaries = new LogLineBatch.Dictionaries();
+        if ("mapped".equals(reader)) {
+            return () -> {
+                try (MappedCsvReader csv = new MappedCsvReader(data)) {
+                    return readBatches(csv.rows(), rows -> LogLineBatch.fromCsvRows(rows, "benchmark", dictionaries));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+        }
+        return () -> {
+            try (Reader csv = Files.newBufferedReader(data, StandardCharsets.UTF_8)) {
+                return readBatches(CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(csv),
+                        rows -> LogLineBatch.fromOpenSSH(rows, "benchmark", dictionaries));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    private static <T> LogLineBatch readBatches(Iterable<T> rows, Function<List<T>, LogLineBatch> decoder) {
+        LogLineBatch last = null;
+        List<T> batch = new ArrayList<>(1000);
+        for (T row : rows) {
+            batch.add(row);
+            if (batch.size() == 1000) {
+                last = decoder.apply(batch);
+                batch.clear();
+            }
+        }
+        return batch.isEmpty() ? last : decoder.apply(batch);
+    }
+
+    /**
+     * @param source content to slice the parameters out of the content by the compiled template (TemplateExtractor),
+     *               anything else to tokenize the ParameterList column
+     * @return the parameter values of the next record
+     */
+    public Supplier<Object> extractParameters(String source) {
+        Map<String, TemplateExtractor> extractors = new HashMap<>();
+        for (CSVRecord record : records)
+            extractors.computeIfAbsent(record.get(8), TemplateExtractor::compile);
+        if ("content".equals(source)) {
+            return () -> {
+                CSVRecord record = records.get(nextRow());
+                TemplateExtractor extractor = extractors.get(record.get(8));
+                ParameterList parameters = extractor == null ? null : extractor.extract(record.get(6));
+                return parameters == null ? null : parameters.values();
+            };
+        }
+        return () -> ParameterList.parse(records.get(nextRow()).get(9)).values();
+    }
+
+    /**
+     * @param patternType Parameter or LogLine to only use the patterns of that type, anything else for all patterns
+     * @return Main.processTemplateParameters on the example line of the next template
+     */
+    public Supplier<Object> processTemplateParameters(String patternType) {
+        PatternSet patterns = new PatternSet(Main.defaultPatterns().stream()
+                .filter(pattern -> !EnumPatternType.Parameter.name().equals(patternType) && !EnumPatternType.LogLine.name().equals(patternType)
+                        || pattern.type.name().equals(patternType))
+                .collect(Collectors.toList()));
+        List<LogLine> lines = new ArrayList<>(examples.values());
+        int[] nextLine = {0};
+        return () -> {
+            LogLine line = lines.get(nextLine[0]);
+            nextLine[0] = (nextLine[0] + 1) % lines.size();
+            Template template = new Template(line.EventId, line.EventTemplate);
+            try {
+                Main.processTemplateParameters(patterns, template, line);
+            } catch (CloneNotSupportedException e) {
+                throw new IllegalStateException(e);
+            }
+            return template;
+        };
+    }
+
+    /**
+     * @return Main.getLineInstance of the next line
+     */
+    public Supplier<Object> getLineInstance() {
+        LastTripleSink sink = new LastTripleSink();
+        return () -> {
+            Main.getLineInstance(sink, batch, nextRow());
+            return sink.last;
+        };
+    }
+
+    /**
+     * @return timestamp of the next record, parsed from its columns and formatted as xsd:dateTime (formerly getDate)
+     */
+    public Supplier<Object> getDate() {
+        return () -> {
+            CSVRecord record = records.get(nextRow());
+            try {
+                return TimestampParser.format(timestampParser.parse(record.get(1), record.get(2), record.get(3)));
+            } catch (java.text.ParseException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    /**
+     * @return the per-line loop of Main.parseLogLines over the whole dataset
+     */
+    public Supplier<Object> parseLogLines() {
+        LastTripleSink sink = new LastTripleSink();
+        return () -> {
+            parseAll(sink);
+            return sink.last;
+        };
+    }
+
+    /**
+     * @return streamed Turtle serialization of the log KG of the whole dataset
+     */
+    public Supplier<Object> serializeTurtle() {
+        return () -> {
+            StreamRDF writer = StreamRDFWriter.getWriterStream(NullOutputStream.sink(), RDFFormat.TURTLE_BLOCKS);
+            writer.start();
+            for (String[] prefix : Vocabulary.prefixes())
+                writer.prefix(prefix[0], prefix[1]);
+            triples.forEach(writer::triple);
+            writer.finish();
+            return writer;
+        };
+    }
+
+    /**
+     * @return Turtle serialization of the log KG of the whole dataset from an in-memory model (Model output type)
+     */
+    public Supplier<Object> serializeModelTurtle() {
+        Model model = ModelFactory.createDefaultModel();
+        StreamRDF graph = StreamRDFLib.graph(model.getGraph());
+        for (String[] prefix : Vocabulary.prefixes())
+            graph.prefix(prefix[0], prefix[1]);
+        triples.forEach(graph::triple);
+        return () -> model.write(NullOutputStream.sink(), "Turtle");
+    }
+}
@@ -0,0 +1,316 @@
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Generates structured log CSVs of any size that look like the bundled inputs.
+ * <p>
+ * (1) learn the templates, their frequencies, sample lines and the values of each parameter position from the
+ * *_structured.csv and *_templates.csv files (templates without structured lines get values from parameters
+ * with the same preceding word, e.g. "from <*>" or "port <*>");
+ * <p>
+ * (2) draw lines from the learned template mix, replacing every parameter value in the sample line by a value of
+ * the same position. Distinct values per position grow with the number of lines like in real logs (Heaps' law,
+ * new values are synthesized from observed ones), and recently used values are likely to repeat.
+ * <p>
+ * Usage: SyntheticLogGenerator --lines=1000000 --out=output/synthetic/1M [--seed=42] [--input=./input]
+ * writes out.log_structured.csv and out.log_templates.csv
+ */
+public class SyntheticLogGenerator {
+
+    private static final Pattern IPV4 = Pattern.compile("\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}");
+    private static final Pattern NUMBER = Pattern.compile("\\d+");
+    private static final Pattern WILDCARD = Pattern.compile("<\\*>");
+    private static final Pattern CONTEXT_WORD = Pattern.compile("(\\w+)\\W{0,2}$");
+
+    // exponent of Heaps' law: distinct values grow with lines^HEAPS_BETA
+    private static final double HEAPS_BETA = 0.5;
+    private static final int RECENT_VALUES = 64;
+
+    private static final String[] HEADER = {"LineId", "Month", "Date", "Time", "Type", "Component", "Content",
+            "EventId", "EventTemplate", "ParameterList"};
+
+    /**
+     * Values of one parameter position, grows new values while generating
+     */
+    private static class ValuePool {
+        final List<String> values = new ArrayList<>();
+        final Set<String> distinct = new HashSet<>();
+        int observed;
+        int observedDistinct;
+        int drawn;
+
+        void observe(String value) {
+            observed++;
+            if (distinct.add(value)) {
+                values.add(value);
+                observedDistinct++;
+            }
+        }
+
+        String draw(Random random) {
+            drawn++;
+            // probability of a new value is the derivative of Heaps' law fitted to the observed values
+            double newProbability = HEAPS_BETA * observedDistinct * Math.pow(drawn, HEAPS_BETA - 1)
+                    / Math.pow(Math.max(observed, 1), HEAPS_BETA);
+            if (random.nextDouble() < Math.min(1, newProbability) && drawn > observed) {
+                String value = mutate(values.get(random.nextInt(values.size())), random);
+                if (distinct.add(value))
+                    values.add(value);
+                return value;
+            }
+            if (random.nextBoolean()) // bursts: recent values are likely to come again
+                return values.get(Math.max(0, values.size() - 1 - random.nextInt(RECENT_VALUES)));
+            double u = random.nextDouble();
+            return values.get((int) (values.size() * u * u)); // skewed towards the frequent early values
+        }
+    }
+
+    /**
+     * Template with its learned sample lines
+     */
+    private static class TemplateModel {
+        final String eventId;
+        final String template;
+        final List<String[]> samples = new ArrayList<>(); // content + parameter values
+        final List<ValuePool> pools = new ArrayList<>();
+        long weight;
+
+        TemplateModel(String eventId, String template) {
+            this.eventId = eventId;
+            this.template = template;
+        }
+
+        void observe(String content, List<String> parameters) {
+            if (samples.size() < 16) {
+                String[] sample = new String[parameters.size() + 1];
+                sample[0] = content;
+                for (int i = 0; i < parameters.size(); i++)
+                    sample[i + 1] = parameters.get(i);
+                samples.add(sample);
+            }
+            for (int i = 0; i < parameters.size(); i++) {
+                while (pools.size() <= i)
+                    pools.add(new ValuePool());
+                pools.get(i).observe(parameters.get(i));
+            }
+        }
+    }
+
+    private final Map<String, TemplateModel> templates = new LinkedHashMap<>();
+    private final Map<String, ValuePool> contextPools = new HashMap<>();
+    private final Map<String, Integer> levels = new HashMap<>();
+    private final Map<String, Integer> components = new HashMap<>();
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parseOptions(args);
+        SyntheticLogGenerator generator = new SyntheticLogGenerator();
+        generator.learn(Paths.get(options.getOrDefault("input", "./input")));
+        generator.generate(Long.parseLong(options.getOrDefault("lines", "1000000")),
+                options.getOrDefault("out", "output/synthetic/synthetic"),
+                Long.parseLong(options.getOrDefault("seed", "42")));
+    }
+
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] nameValue = arg.replaceFirst("^--", "").split("=", 2);
+            options.put(nameValue[0], nameValue.length > 1 ? nameValue[1] : "true");
+        }
+        return options;
+    }
+
+    /**
+     * Learn templates and parameter values from all CSVs below the input directory
+     *
+     * @param input
+     * @throws IOException
+     */
+    public void learn(Path input) throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(input)) {
+            files = paths.filter(path -> path.toString().endsWith(".csv")).sorted().collect(Collectors.toList());
+        }
+
+        for (Path file : files) {
+            if (file.toString().endsWith("_structured.csv"))
+                learnStructured(file);
+        }
+        for (Path file : files) {
+            if (file.toString().endsWith("_templates.csv"))
+                learnTemplates(file);
+        }
+
+        // templates without any structured line get values from parameters with the same context word
+        for (TemplateModel model : templates.values()) {
+            if (model.samples.isEmpty())
+                synthesizeSample(model);
+        }
+        templates.values().removeIf(model -> model.samples.isEmpty());
+        if (templates.isEmpty())
+            throw new IOException("No templates found below " + input);
+    }
+
+    private void learnStructured(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            for (CSVRecord record : CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(reader)) {
+                TemplateModel model = templates.computeIfAbsent(record.get(8), template -> new TemplateModel(record.get(7), template));
+                List<String> parameters = Arrays.asList(ParameterList.parse(record.get(9)).values());
+                model.observe(record.get(6), parameters);
+                model.weight++;
+
+                levels.merge(record.get(4), 1, Integer::sum);
+                components.merge(record.get(5).replaceAll("\\[.*", ""), 1, Integer::sum);
+
+                // pool the values by the word in front of their wildcard
+                Matcher wildcards = WILDCARD.matcher(record.get(8));
+                int position = 0;
+                while (wildcards.find() && position < parameters.size()) {
+                    String context = contextWord(record.get(8).substring(0, wildcards.start()));
+                    contextPools.computeIfAbsent(context, word -> new ValuePool()).observe(parameters.get(position++));
+                }
+            }
+        }
+    }
+
+    private void learnTemplates(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            for (CSVRecord record : CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(reader)) {
+                TemplateModel model = templates.computeIfAbsent(record.get(1), template -> new TemplateModel(record.get(0), template));
+                if (model.samples.isEmpty() && record.size() > 2)
+                    model.weight += Long.parseLong(record.get(2)); // occurrences, only for templates without lines
+            }
+        }
+    }
+
+    private void synthesizeSample(TemplateModel model) {
+        Random random = new Random(model.template.hashCode());
+        StringBuilder content = new StringBuilder();
+        List<String> parameters = new ArrayList<>();
+        Matcher wildcards = WILDCARD.matcher(model.template);
+        int last = 0;
+        while (wildcards.find()) {
+            content.append(model.template, last, wildcards.start());
+            ValuePool pool = contextPools.get(contextWord(model.template.substring(0, wildcards.start())));
+            if (pool == null)
+                pool = contextPools.values().stream().max(Comparator.comparingInt(p -> p.observed)).orElse(null);
+            String value = pool == null ? "0" : pool.values.get(random.nextInt(pool.values.size()));
+            content.append(value);
+            parameters.add(value);
+            last = wildcards.end();
+        }
+        content.append(model.template.substring(last));
+        model.observe(content.toString(), parameters);
+    }
+
+    private static String contextWord(String prefix) {
+        Matcher matcher = CONTEXT_WORD.matcher(prefix);
+        return matcher.find() ? matcher.group(1).toLowerCase(Locale.ENGLISH) : "";
+    }
+
+    /**
+     * Write lines structured log lines and the matching templates CSV
+     *
+     * @param lines
+     * @param out  path prefix, .log_structured.csv and .log_templates.csv are appended
+     * @param seed
+     * @throws IOException
+     */
+    public void generate(long lines, String out, long seed) throws IOException {
+        Random random = new Random(seed);
+        List<TemplateModel> models = new ArrayList<>(templates.values());
+        long[] cumulativeWeights = new long[models.size()];
+        long total = 0;
+        for (int i = 0; i < models.size(); i++) {
+            total += Math.max(1, models.get(i).weight);
+            cumulativeWeights[i] = total;
+        }
+        String level = mostFrequent(levels, "LabSZ");
+        String component = mostFrequent(components, "sshd");
+
+        Path structuredPath = Paths.get(out + ".log_structured.csv");
+        if (structuredPath.getParent() != null)
+            Files.createDirectories(structuredPath.getParent());
+
+        Map<TemplateModel, Long> occurrences = new LinkedHashMap<>();
+        DateTimeFormatter month = DateTimeFormatter.ofPattern("MMM", Locale.ENGLISH);
+        DateTimeFormatter time = DateTimeFormatter.ofPattern("HH:mm:ss");
+        LocalDateTime timestamp = LocalDateTime.of(LocalDateTime.now().getYear(), 1, 1, 0, 0, 0);
+        int pid = 20000;
+
+        try (Writer writer = Files.newBufferedWriter(structuredPath, StandardCharsets.UTF_8);
+             CSVPrinter printer = new CSVPrinter(writer, CSVFormat.DEFAULT.withHeader(HEADER))) {
+            for (long lineId = 1; lineId <= lines; lineId++) {
+                long pick = (long) (random.nextDouble() * total);
+                int index = Arrays.binarySearch(cumulativeWeights, pick + 1);
+                TemplateModel model = models.get(index >= 0 ? index : -index - 1);
+                occurrences.merge(model, 1L, Long::sum);
+
+                String[] sample = model.samples.get(random.nextInt(model.samples.size()));
+                String content = sample[0];
+                List<String> parameters = new ArrayList<>(sample.length - 1);
+                int searchFrom = 0;
+                for (int i = 1; i < sample.length; i++) {
+                    // a value that is not in the content stays as it is, in the content and in the ParameterList
+                    int found = sample[i].isEmpty() ? -1 : content.indexOf(sample[i], searchFrom);
+                    if (found < 0) {
+                        parameters.add(sample[i]);
+                        continue;
+                    }
+                    String value = model.pools.get(i - 1).draw(random);
+                    content = content.substring(0, found) + value + content.substring(found + sample[i].length());
+                    searchFrom = found + value.length();
+                    parameters.add(value);
+                }
+
+                if (random.nextInt(5) == 0) // a new session every few lines
+                    pid += 1 + random.nextInt(10);
+                if (random.nextInt(3) == 0)
+                    timestamp = timestamp.plusSeconds(random.nextInt(3));
+
+                printer.printRecord(lineId, timestamp.format(month), timestamp.getDayOfMonth(), timestamp.format(time),
+                        level, component + "[" + pid + "]", content, model.eventId, model.template,
+                        TemplateMiner.formatParameterList(parameters));
+            }
+        }
+
+        try (Writer writer = Files.newBufferedWriter(Paths.get(out + ".log_templates.csv"), StandardCharsets.UTF_8);
+             CSVPrinter printer = new CSVPrinter(writer, CSVFormat.DEFAULT.withHeader("EventId", "EventTemplate", "Occurrences"))) {
+            for (Map.Entry<TemplateModel, Long> entry : occurrences.entrySet())
+                printer.printRecord(entry.getKey().eventId, entry.getKey().template, entry.getValue());
+        }
+    }
+
+    /**
+     * Synthesize a new value of the same shape: new IPs for IPs, new numbers for numbers, otherwise a suffix
+     */
+    private static String mutate(String value, Random random) {
+        Matcher ip = IPV4.matcher(value);
+        if (ip.find()) {
+            String newIp = (1 + random.nextInt(223)) + "." + random.nextInt(256) + "." + random.nextInt(256) + "." + (1 + random.nextInt(254));
+            return value.substring(0, ip.start()) + newIp + value.substring(ip.end());
+        }
+        if (NUMBER.matcher(value).matches())
+            return String.valueOf(random.nextInt((int) Math.min(Integer.MAX_VALUE, Math.pow(10, Math.min(9, value.length())))));
+        return value + random.nextInt(10000);
+    }
+
+    private static String mostFrequent(Map<String, Integer> counts, String fallback) {
+        return counts.entrySet().stream().max(Map.Entry.comparingByValue()).map(Map.Entry::getKey).orElse(fallback);
+    }
+}
@@ -0,0 +1,23 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+/**
+ * Runs the parser once in a fresh JVM and reports its elapsed time and peak heap for the ThroughputSuite
+ */
+public class ThroughputProbe {
+
+    public static void main(String[] args) throws Exception {
+        long start = System.nanoTime();
+        Main.main(args);
+        long elapsed = System.nanoTime() - start;
+
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP)
+                peakHeap += pool.getPeakUsage().getUsed();
+        }
+        System.out.println(ThroughputSuite.ELAPSED_NANOS + elapsed);
+        System.out.println(ThroughputSuite.PEAK_HEAP_BYTES + peakHeap);
+    }
+}
@@ -0,0 +1,172 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end throughput and memory suite: generates synthetic logs at each scale, parses each in a fresh JVM and
+ * records lines/sec, peak heap and output size to results.csv.
+ * <p>
+ * Usage: ThroughputSuite [--scales=1000000,10000000,100000000] [--workdir=output/throughput] [--heap=4g]
+ * [--outputType=Stream] [--workers=n] [--logLevel=info] [--baseline=results.csv] [--tolerance=0.2]
+ * <p>
+ * --format, --gzip, --segmentTriples, --segmentBytes and --shardBy are passed on to the parser. Each scale writes
+ * its log KG (files, segments, shards or TDB2 store) to its own directory, the output size is the size of all of it.
+ * <p>
+ * With --baseline the run fails (exit code 1) if lines/sec at any scale drops, or peak heap grows, by more than
+ * the tolerance compared to the baseline results.
+ */
+public class ThroughputSuite {
+
+    static final String ELAPSED_NANOS = "ELAPSED_NANOS=";
+    static final String PEAK_HEAP_BYTES = "PEAK_HEAP_BYTES=";
+
+    private static final String[] PARSER_OPTIONS = {"format", "gzip", "segmentTriples", "segmentBytes", "shardBy"};
+
+    private static final String RESULTS_HEADER = "lines,seconds,linesPerSecond,peakHeapBytes,outputBytes,outputType,workers";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = SyntheticLogGenerator.parseOptions(args);
+        Path workdir = Paths.get(options.getOrDefault("workdir", "output/throughput"));
+        String outputType = options.getOrDefault("outputType", "Stream");
+        String workers = options.getOrDefault("workers", String.valueOf(Runtime.getRuntime().availableProcessors()));
+        Files.createDirectories(workdir);
+
+        SyntheticLogGenerator generator = null;
+        List<String[]> results = new ArrayList<>();
+        for (String scale : options.getOrDefault("scales", "1000000,10000000,100000000").split(",")) {
+            long lines = Long.parseLong(scale.trim());
+            String data = workdir.resolve("synthetic_" + lines).toString();
+
+            // reuse generated data, the same seed always gives the same lines
+            if (!Files.exists(Paths.get(data + ".log_structured.csv"))) {
+                if (generator == null) {
+                    generator = new SyntheticLogGenerator();
+                    generator.learn(Paths.get(options.getOrDefault("input", "./input")));
+                }
+                System.out.println("Generating " + lines + " lines");
+                generator.generate(lines, data, 42);
+            }
+
+            Path outputDir = workdir.resolve("kg_" + lines);
+            Path catalog = workdir.resolve("catalog_" + lines);
+            Path log = workdir.resolve("run_" + lines + ".log");
+            Files.deleteIfExists(catalog);
+            delete(outputDir);
+            Files.createDirectories(outputDir);
+
+            List<String> command = new ArrayList<>(Arrays.asList(
+                    Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-Xmx" + options.getOrDefault("heap", "4g"),
+                    "-Dorg.slf4j.simpleLogger.defaultLogLevel=" + options.getOrDefault("logLevel", "info"),
+                    "-cp", System.getProperty("java.class.path"),
+                    "ThroughputProbe",
+                    "--template=" + data + ".log_templates.csv",
+                    "--data=" + data + ".log_structured.csv",
+                    "--output=" + outputDir.resolve("log_KG.ttl"),
+                    "--store=" + outputDir.resolve("log_KG_tdb2"),
+                    "--catalog=" + catalog,
+                    "--outputType=" + outputType,
+                    "--workers=" + workers));
+            for (String option : PARSER_OPTIONS) {
+                if (options.containsKey(option))
+                    command.add("--" + option + "=" + options.get(option));
+            }
+            System.out.println("Parsing " + lines + " lines, log in " + log);
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+            if (process.waitFor() != 0)
+                throw new IOException("Parser failed for " + lines + " lines, see " + log);
+
+            long elapsed = readValue(log, ELAPSED_NANOS);
+            long peakHeap = readValue(log, PEAK_HEAP_BYTES);
+            double seconds = elapsed / 1e9;
+            String[] result = {String.valueOf(lines), String.format(Locale.ROOT, "%.3f", seconds),
+                    String.format(Locale.ROOT, "%.0f", lines / seconds), String.valueOf(peakHeap),
+                    String.valueOf(size(outputDir)), outputType, workers};
+            System.out.println(RESULTS_HEADER + System.lineSeparator() + String.join(",", result));
+            results.add(result);
+        }
+
+        // compare before writing, the baseline may be the previous results.csv
+        boolean passed = !options.containsKey("baseline")
+                || compare(results, Paths.get(options.get("baseline")), Double.parseDouble(options.getOrDefault("tolerance", "0.2")));
+
+        Path resultsFile = workdir.resolve("results.csv");
+        try (Writer writer = Files.newBufferedWriter(resultsFile, StandardCharsets.UTF_8)) {
+            writer.write(RESULTS_HEADER + System.lineSeparator());
+            for (String[] result : results)
+                writer.write(String.join(",", result) + System.lineSeparator());
+        }
+        System.out.println("Results written to " + resultsFile);
+
+        if (!passed)
+            System.exit(1);
+    }
+
+    /**
+     * @return bytes of all files below the directory
+     */
+    private static long size(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            long size = 0;
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (Files.isRegularFile(file))
+                    size += Files.size(file);
+            }
+            return size;
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        if (!Files.exists(directory))
+            return;
+        try (Stream<Path> files = Files.walk(directory)) {
+            List<Path> sorted = new ArrayList<>();
+            files.forEach(sorted::add);
+            Collections.reverse(sorted); // children before their directory
+            for (Path file : sorted)
+                Files.delete(file);
+        }
+    }
+
+    private static long readValue(Path log, String key) throws IOException {
+        try (Stream<String> lines = Files.lines(log, StandardCharsets.UTF_8)) {
+            return lines.filter(line -> line.startsWith(key)).map(line -> Long.parseLong(line.substring(key.length())))
+                    .reduce((first, second) -> second)
+                    .orElseThrow(() -> new IOException(key + " missing in " + log));
+        }
+    }
+
+    /**
+     * Compare the results with a baseline results.csv
+     *
+     * @return false if any scale regressed by more than the tolerance
+     */
+    private static boolean compare(List<String[]> results, Path baseline, double tolerance) throws IOException {
+        Map<String, String[]> baselineResults = new HashMap<>();
+        List<String> lines = Files.readAllLines(baseline, StandardCharsets.UTF_8);
+        for (String line : lines.subList(1, lines.size())) {
+            String[] result = line.split(",");
+            baselineResults.put(result[0], result);
+        }
+
+        boolean passed = true;
+        for (String[] result : results) {
+            String[] before = baselineResults.get(result[0]);
+            // if scale not in baseline, skip
+            if (before == null)
+                continue;
+            double throughput = Double.parseDouble(result[2]) / Double.parseDouble(before[2]);
+            double heap = Double.parseDouble(result[3]) / Double.parseDouble(before[3]);
+            System.out.println(String.format(Locale.ROOT, "%s lines: throughput %.2fx, peak heap %.2fx of baseline",
+                    result[0], throughput, heap));
+            if (throughput < 1 - tolerance || heap > 1 + tolerance) {
+                System.out.println("REGRESSION at " + result[0] + " lines");
+                passed = false;
+            }
+        }
+        return passed;
+    }
+}
@@ -0,0 +1,23 @@
+package benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the parser benchmarks with the gc profiler, so that results report allocation rates next to ops/sec.
+ * Accepts the usual JMH command line options, e.g. a benchmark regex or -rf json.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class);
+        if (commandLine.getIncludes().isEmpty())
+            options.include("benchmark\\..*");
+
+        new Runner(options.build()).run();
+    }
+}
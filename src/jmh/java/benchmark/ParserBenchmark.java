@@ -0,0 +1,127 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Throughput of the per-line hot paths and of the serialization, on the bundled openSSH datasets
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"openSSH/OpenSSH_2k_A", "openSSH/OpenSSH_2k_B"})
+    public String dataset;
+
+    private Supplier<Object> fromOpenSSH;
+    private Supplier<Object> readCommonsCsv;
+    private Supplier<Object> readMappedCsv;
+    private Supplier<Object> getLineInstance;
+    private Supplier<Object> getDate;
+    private Supplier<Object> extractParameters;
+    private Supplier<Object> parseParameterList;
+    private Supplier<Object> parseLogLines;
+    private Supplier<Object> serializeTurtle;
+    private Supplier<Object> serializeModelTurtle;
+
+    @Setup
+    public void setup() throws Exception {
+        Object targets = Targets.create(dataset);
+        fromOpenSSH = Targets.get(targets, "fromOpenSSH");
+        readCommonsCsv = Targets.get(targets, "readCsv", "commons");
+        readMappedCsv = Targets.get(targets, "readCsv", "mapped");
+        getLineInstance = Targets.get(targets, "getLineInstance");
+        getDate = Targets.get(targets, "getDate");
+        extractParameters = Targets.get(targets, "extractParameters", "content");
+        parseParameterList = Targets.get(targets, "extractParameters", "parameterList");
+        parseLogLines = Targets.get(targets, "parseLogLines");
+        serializeTurtle = Targets.get(targets, "serializeTurtle");
+        serializeModelTurtle = Targets.get(targets, "serializeModelTurtle");
+    }
+
+    /**
+     * LogLine.fromOpenSSH, one record per op
+     */
+    @Benchmark
+    public Object fromOpenSSH() {
+        return fromOpenSSH.get();
+    }
+
+    /**
+     * Structured CSV read by commons-csv and decoded into LogLineBatches, the whole dataset per op
+     */
+    @Benchmark
+    public Object readCommonsCsv() {
+        return readCommonsCsv.get();
+    }
+
+    /**
+     * Structured CSV read by the memory-mapped reader and decoded into LogLineBatches, the whole dataset per op
+     */
+    @Benchmark
+    public Object readMappedCsv() {
+        return readMappedCsv.get();
+    }
+
+    /**
+     * Main.getLineInstance, one line per op
+     */
+    @Benchmark
+    public Object getLineInstance() {
+        return getLineInstance.get();
+    }
+
+    /**
+     * Timestamp parsing and formatting, one line per op
+     */
+    @Benchmark
+    public Object getDate() {
+        return getDate.get();
+    }
+
+    /**
+     * Parameters sliced out of the content by the compiled template, one line per op
+     */
+    @Benchmark
+    public Object extractParameters() {
+        return extractParameters.get();
+    }
+
+    /**
+     * Parameters tokenized from the ParameterList column, one line per op
+     */
+    @Benchmark
+    public Object parseParameterList() {
+        return parseParameterList.get();
+    }
+
+    /**
+     * Per-line loop of Main.parseLogLines, the whole dataset per op
+     */
+    @Benchmark
+    public Object parseLogLines() {
+        return parseLogLines.get();
+    }
+
+    /**
+     * Streamed Turtle serialization of the dataset's log KG per op
+     */
+    @Benchmark
+    public Object serializeTurtle() {
+        return serializeTurtle.get();
+    }
+
+    /**
+     * Turtle serialization of the dataset's log KG from an in-memory model per op
+     */
+    @Benchmark
+    public Object serializeModelTurtle() {
+        return serializeModelTurtle.get();
+    }
+}
@@ -0,0 +1,36 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Throughput of Main.processTemplateParameters per EntityPattern type, one template example line per op
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatternBenchmark {
+
+    @Param({"openSSH/OpenSSH_2k_A", "openSSH/OpenSSH_2k_B"})
+    public String dataset;
+
+    @Param({"Parameter", "LogLine", "All"})
+    public String patternType;
+
+    private Supplier<Object> processTemplateParameters;
+
+    @Setup
+    public void setup() throws Exception {
+        processTemplateParameters = Targets.get(Targets.create(dataset), "processTemplateParameters", patternType);
+    }
+
+    @Benchmark
+    public Object processTemplateParameters() {
+        return processTemplateParameters.get();
+    }
+}
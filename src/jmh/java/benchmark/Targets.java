@@ -0,0 +1,26 @@
+package benchmark;
+
+import java.util.function.Supplier;
+
+/**
+ * Reflective access to the BenchmarkTargets of the default package, only used during benchmark setup
+ */
+final class Targets {
+
+    private Targets() {
+    }
+
+    static Object create(String dataset) throws Exception {
+        return Class.forName("BenchmarkTargets").getConstructor(String.class).newInstance(dataset);
+    }
+
+    @SuppressWarnings("unchecked")
+    static Supplier<Object> get(Object targets, String name) throws Exception {
+        return (Supplier<Object>) targets.getClass().getMethod(name).invoke(targets);
+    }
+
+    @SuppressWarnings("unchecked")
+    static Supplier<Object> get(Object targets, String name, String argument) throws Exception {
+        return (Supplier<Object>) targets.getClass().getMethod(name, String.class).invoke(targets, argument);
+    }
+}
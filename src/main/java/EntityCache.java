@@ -0,0 +1,133 @@
+import org.apache.jena.graph.Node;
+import org.apache.jena.riot.system.StreamRDF;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded LRU cache from raw parameter values to entity IRIs, per entity class.
+ * <p>
+ * The type and label triples of an entity are emitted when it is not in the cache, i.e. the first time it is
+ * seen (or again after it was evicted, which only repeats triples that are already in the output). With a scope
+ * (a shard of the ShardedOutput) they are emitted the first time the entity is seen in that scope.
+ * The cache is split into segments with their own lock so the pipeline workers rarely wait for each other.
+ */
+public class EntityCache {
+
+    private static final int SEGMENTS = 16;
+
+    private static class Segment extends LinkedHashMap<String, Node> {
+        private final int maxSize;
+
+        Segment(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Node> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Segment[]> classes = new ConcurrentHashMap<>();
+    private final int segmentSize;
+
+    /**
+     * @param maxSize maximum number of cached entities per class
+     */
+    public EntityCache(int maxSize) {
+        this.segmentSize = Math.max(1, maxSize / SEGMENTS);
+    }
+
+    /**
+     * @param className
+     * @param value     raw parameter value
+     * @param output    receives the type and label triples of entities that are not cached
+     * @return the entity IRI of the value
+     */
+    public Node resolve(String className, String value, StreamRDF output) {
+        return resolve(className, value, null, output);
+    }
+
+    /**
+     * @param className
+     * @param value     raw parameter value
+     * @param scope     part of the output the type and label triples are needed in, e.g. a shard; null for all of it
+     * @param output    receives the type and label triples of entities that are not cached in the scope
+     * @return the entity IRI of the value
+     */
+    public Node resolve(String className, String value, String scope, StreamRDF output) {
+        Segment[] segments = classes.get(className);
+        if (segments == null)
+            segments = classes.computeIfAbsent(className, name -> newSegments());
+
+        String key = scope == null ? value : scope + '\u0000' + value;
+        int hash = value.hashCode();
+        Segment segment = segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+        Node entity;
+        synchronized (segment) {
+            entity = segment.get(key);
+        }
+        if (entity != null)
+            return entity;
+
+        entity = Vocabulary.instance(localName(className, value));
+        synchronized (segment) {
+            // another worker may have added it in the meantime, then it already emitted the triples
+            if (segment.putIfAbsent(key, entity) != null)
+                return entity;
+        }
+        header(entity, className, value, output);
+        return entity;
+    }
+
+    /**
+     * Emit the type and label triples of an entity
+     *
+     * @param entity
+     * @param className
+     * @param value     raw parameter value
+     * @param output
+     */
+    static void header(Node entity, String className, String value, StreamRDF output) {
+        output.triple(Vocabulary.triple(entity, Vocabulary.TYPE, Vocabulary.core(className)));
+        output.triple(Vocabulary.triple(entity, Vocabulary.LABEL, Vocabulary.literal(value)));
+    }
+
+    private Segment[] newSegments() {
+        Segment[] segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++)
+            segments[i] = new Segment(segmentSize);
+        return segments;
+    }
+
+    /**
+     * @param className
+     * @param value     raw parameter value
+     * @return local name of the entity IRI of the value, e.g. Host_173_234_31_186
+     */
+    static String localName(String className, String value) {
+        return className + "_" + sanitize(value);
+    }
+
+    /**
+     * Local name of an entity value: '[', '.', ']' and whitespace become '_' (formerly replaceAll("[\\[\\.\\]\\s]", "_"))
+     *
+     * @param value
+     * @return sanitized value
+     */
+    static String sanitize(String value) {
+        char[] chars = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '[' || c == '.' || c == ']' || c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r') {
+                if (chars == null)
+                    chars = value.toCharArray();
+                chars[i] = '_';
+            }
+        }
+        return chars == null ? value : new String(chars);
+    }
+}
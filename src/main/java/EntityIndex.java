@@ -0,0 +1,392 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Inverted index from entity IRIs (Host, User, Domain, URL, Port, ...) to the log lines they occur in, read from the
+ * memory-mapped index files written by EntityIndexBuilder. A lookup is a binary search over the entity table plus the
+ * decoding of one posting list per file, the log KG itself is not needed.
+ * <p>
+ * An index path such as output/log_KG.idx stands for the numbered segments next to it (log_KG-00001.idx, ...), one
+ * per run, and for the file itself if an older version wrote the index there. Postings of several segments are
+ * returned in the order of the segments, a line indexed by several runs only once.
+ * <p>
+ * File format of a segment (big-endian):
+ * <pre>
+ * header   MAGIC int, VERSION short
+ * entries  per entity, sorted by the UTF-8 bytes of its IRI:
+ *          key length int, key bytes, posting count varint, postings
+ * sources  count int, per source: name length int, name bytes
+ * table    per entity the offset of its entry, long
+ * footer   sources offset long, table offset long, entity count int, MAGIC int
+ * </pre>
+ * Postings are sorted by source and LineId, each is three varints: source delta, LineId (delta to the previous
+ * LineId of the same source) and timestamp delta (zigzag encoded, epoch seconds).
+ * <p>
+ * Entities that are literals in the log KG (Port) are indexed by the IRI they would have as entities, see
+ * lookup(className, value).
+ */
+public class EntityIndex implements Closeable {
+
+    static final int MAGIC = 0x534c4549; // "SLEI"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 6;
+    static final int FOOTER_SIZE = 24;
+
+    private static final int REGION_BITS = 30; // mapped in regions of 1 GB
+
+    /**
+     * A log line an entity occurs in
+     */
+    public static class Posting {
+        public final String source;
+        public final int lineId;
+        public final long timestamp; // epoch seconds, LogLineBatch.NO_TIMESTAMP if the line has none
+
+        Posting(String source, int lineId, long timestamp) {
+            this.source = source;
+            this.lineId = lineId;
+            this.timestamp = timestamp;
+        }
+
+        @Override
+        public String toString() {
+            return source + " " + lineId + " " + (timestamp == LogLineBatch.NO_TIMESTAMP ? "-" : TimestampParser.format(timestamp));
+        }
+    }
+
+    /**
+     * Receives the postings of an entity one at a time, without creating a Posting for each
+     */
+    interface PostingConsumer {
+        /**
+         * @param source number of the source in the segment, see Segment.source
+         */
+        void accept(int source, int lineId, long timestamp);
+    }
+
+    /**
+     * One memory-mapped index file
+     */
+    static class Segment implements Closeable {
+        private final FileChannel channel;
+        private final MappedByteBuffer[] regions;
+        private final String[] sources;
+        private final long tableOffset;
+        private final int entityCount;
+        private long position; // read position of the varint decoding
+
+        Segment(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                long size = channel.size();
+                if (size < HEADER_SIZE + FOOTER_SIZE)
+                    throw new IOException("Not an entity index: " + path);
+                regions = new MappedByteBuffer[(int) ((size + (1L << REGION_BITS) - 1) >>> REGION_BITS)];
+                for (int i = 0; i < regions.length; i++) {
+                    long start = (long) i << REGION_BITS;
+                    regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(1L << REGION_BITS, size - start));
+                }
+
+                if (readInt(0) != MAGIC || readInt(size - 4) != MAGIC)
+                    throw new IOException("Not an entity index: " + path);
+                short version = (short) ((get(4) & 0xff) << 8 | get(5) & 0xff);
+                if (version != VERSION)
+                    throw new IOException("Unsupported entity index version " + version + ": " + path);
+
+                long sourcesOffset = readLong(size - FOOTER_SIZE);
+                tableOffset = readLong(size - FOOTER_SIZE + 8);
+                entityCount = readInt(size - 8);
+
+                sources = new String[readInt(sourcesOffset)];
+                long offset = sourcesOffset + 4;
+                for (int i = 0; i < sources.length; i++) {
+                    byte[] name = readBytes(offset + 4, readInt(offset));
+                    sources[i] = new String(name, StandardCharsets.UTF_8);
+                    offset += 4 + name.length;
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        int size() {
+            return entityCount;
+        }
+
+        /**
+         * @param entity number of the entity in key order
+         * @return its IRI as UTF-8 bytes
+         */
+        synchronized byte[] key(int entity) {
+            long entry = readLong(tableOffset + 8L * entity);
+            return readBytes(entry + 4, readInt(entry));
+        }
+
+        /**
+         * @param source number of a source in the segment
+         * @return its name
+         */
+        String source(int source) {
+            return sources[source];
+        }
+
+        /**
+         * @param entity number of the entity in key order
+         * @return number of its log lines
+         */
+        synchronized int count(int entity) {
+            long entry = readLong(tableOffset + 8L * entity);
+            position = entry + 4 + readInt(entry);
+            return (int) readVarLong();
+        }
+
+        /**
+         * @param entity   number of the entity in key order
+         * @param consumer gets its log lines by source and LineId
+         */
+        synchronized void postings(int entity, PostingConsumer consumer) {
+            long entry = readLong(tableOffset + 8L * entity);
+            readPostings(entry + 4 + readInt(entry), consumer);
+        }
+
+        synchronized List<Posting> lookup(byte[] key) {
+            int low = 0;
+            int high = entityCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                long entry = readLong(tableOffset + 8L * middle);
+                int compared = compareKey(entry, key);
+                if (compared < 0)
+                    low = middle + 1;
+                else if (compared > 0)
+                    high = middle - 1;
+                else {
+                    List<Posting> postings = new ArrayList<>();
+                    readPostings(entry + 4 + key.length,
+                            (source, lineId, timestamp) -> postings.add(new Posting(sources[source], lineId, timestamp)));
+                    return postings;
+                }
+            }
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private int compareKey(long entry, byte[] key) {
+            int length = readInt(entry);
+            for (int i = 0; i < Math.min(length, key.length); i++) {
+                int compared = (get(entry + 4 + i) & 0xff) - (key[i] & 0xff);
+                if (compared != 0)
+                    return compared;
+            }
+            return length - key.length;
+        }
+
+        private void readPostings(long offset, PostingConsumer consumer) {
+            position = offset;
+            int count = (int) readVarLong();
+            int source = 0;
+            int lineId = 0;
+            long timestamp = 0;
+            for (int i = 0; i < count; i++) {
+                int sourceDelta = (int) readVarLong();
+                source += sourceDelta;
+                lineId = sourceDelta > 0 ? (int) readVarLong() : lineId + (int) readVarLong();
+                timestamp += EntityIndexBuilder.unzigzag(readVarLong());
+                consumer.accept(source, lineId, timestamp);
+            }
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = get(position++);
+                value |= (long) (b & 0x7f) << shift;
+                if (b >= 0)
+                    return value;
+            }
+        }
+
+        private byte get(long offset) {
+            return regions[(int) (offset >>> REGION_BITS)].get((int) (offset & ((1L << REGION_BITS) - 1)));
+        }
+
+        private int readInt(long offset) {
+            return (get(offset) & 0xff) << 24 | (get(offset + 1) & 0xff) << 16 | (get(offset + 2) & 0xff) << 8 | get(offset + 3) & 0xff;
+        }
+
+        private long readLong(long offset) {
+            return (long) readInt(offset) << 32 | readInt(offset + 4) & 0xffffffffL;
+        }
+
+        private byte[] readBytes(long offset, int length) {
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++)
+                bytes[i] = get(offset + i);
+            return bytes;
+        }
+    }
+
+    private final List<Segment> segments = new ArrayList<>();
+
+    /**
+     * @param path index path, see EntityIndexBuilder
+     * @throws IOException if there is no index at the path
+     */
+    public EntityIndex(Path path) throws IOException {
+        List<Path> files = files(path);
+        if (files.isEmpty())
+            throw new IOException("No entity index at " + path);
+        try {
+            for (Path file : files)
+                segments.add(new Segment(file));
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param path index path, e.g. output/log_KG.idx
+     * @return the file itself if it exists, followed by the numbered segments next to it in order
+     * @throws IOException
+     */
+    static List<Path> files(Path path) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (Files.isRegularFile(path))
+            files.add(path);
+
+        Path directory = path.toAbsolutePath().getParent();
+        if (directory == null || !Files.isDirectory(directory))
+            return files;
+        Pattern segmentName = segmentName(path);
+        TreeMap<Integer, Path> segments = new TreeMap<>();
+        try (Stream<Path> children = Files.list(directory)) {
+            children.forEach(child -> {
+                Matcher matcher = segmentName.matcher(child.getFileName().toString());
+                if (matcher.matches())
+                    segments.put(Integer.parseInt(matcher.group(1)), child);
+            });
+        }
+        files.addAll(segments.values());
+        return files;
+    }
+
+    /**
+     * @param path    index path, e.g. output/log_KG.idx
+     * @param segment number of the segment
+     * @return path of the segment, e.g. output/log_KG-00001.idx
+     */
+    static Path segmentPath(Path path, int segment) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return path.resolveSibling(dot > 0
+                ? String.format("%s-%05d%s", name.substring(0, dot), segment, name.substring(dot))
+                : String.format("%s-%05d", name, segment));
+    }
+
+    private static Pattern segmentName(Path path) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0
+                ? Pattern.compile(Pattern.quote(name.substring(0, dot)) + "-(\\d{5,})" + Pattern.quote(name.substring(dot)))
+                : Pattern.compile(Pattern.quote(name) + "-(\\d{5,})");
+    }
+
+    /**
+     * @param path index path
+     * @return number of the last segment of the index, 0 if it has none
+     * @throws IOException
+     */
+    static int lastSegment(Path path) throws IOException {
+        int last = 0;
+        Pattern segmentName = segmentName(path);
+        for (Path file : files(path)) {
+            Matcher matcher = segmentName.matcher(file.getFileName().toString());
+            if (matcher.matches())
+                last = Math.max(last, Integer.parseInt(matcher.group(1)));
+        }
+        return last;
+    }
+
+    /**
+     * @return number of indexed entities, an entity of several segments is counted once per segment
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments)
+            size += segment.size();
+        return size;
+    }
+
+    /**
+     * @param className entity class, e.g. Host
+     * @param value     raw parameter value, e.g. 173.234.31.186
+     * @return the log lines of the entity, empty if it is not indexed
+     */
+    public List<Posting> lookup(String className, String value) {
+        return lookup(Main.NS_INSTANCE + EntityCache.localName(className, value));
+    }
+
+    /**
+     * @param entity entity IRI, e.g. http://w3id.org/sepses/id/Host_173_234_31_186
+     * @return the log lines of the entity by segment, source and LineId, empty if it is not indexed
+     */
+    public List<Posting> lookup(String entity) {
+        byte[] key = entity.getBytes(StandardCharsets.UTF_8);
+        if (segments.size() == 1)
+            return segments.get(0).lookup(key);
+
+        List<Posting> postings = new ArrayList<>();
+        Set<String> lines = new HashSet<>();
+        for (Segment segment : segments) {
+            for (Posting posting : segment.lookup(key)) {
+                if (lines.add(posting.source + '\u0000' + posting.lineId))
+                    postings.add(posting);
+            }
+        }
+        return postings;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Segment segment : segments)
+            segment.close();
+    }
+
+    /**
+     * Look up the log lines of an entity, e.g. EntityIndex output/log_KG.idx Host 173.234.31.186
+     * (or the entity IRI instead of class and value)
+     *
+     * @param args index path, entity class and value or entity IRI
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2)
+            throw new IllegalArgumentException("Usage: EntityIndex <index path> <class> <value> | <index path> <entity IRI>");
+        try (EntityIndex index = new EntityIndex(Paths.get(args[0]))) {
+            String entity = args.length > 2 ? Main.NS_INSTANCE + EntityCache.localName(args[1], args[2]) : args[1];
+            long start = System.nanoTime();
+            List<Posting> postings = index.lookup(entity);
+            long micros = (System.nanoTime() - start) / 1000;
+            for (Posting posting : postings)
+                System.out.println(posting);
+            System.err.println(postings.size() + " lines in " + micros + " us");
+        }
+    }
+}
@@ -0,0 +1,487 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Collects the log lines of every entity while the lines are parsed and writes them as a segment of an EntityIndex,
+ * next to the segments of earlier runs.
+ * <p>
+ * The workers add the postings of a line concurrently, in no particular order. Each entity keeps its postings
+ * delta and varint encoded in arrival order (a few bytes per posting), they are only sorted by source and LineId
+ * when they are written. Once the postings take more than maxBufferedBytes, they are spilled into a sorted file in
+ * the index format and the memory is freed; write() merges the spilled files and the rest into the segment of the run.
+ */
+public class EntityIndexBuilder {
+
+    public static final long DEFAULT_MAX_BUFFERED_BYTES = 256L << 20;
+
+    private static final int ENTITY_BYTES = 96; // estimated memory of an entity besides its key and postings
+
+    /**
+     * Postings of one entity in arrival order, as zigzag varint deltas to the previous posting
+     */
+    private static class Postings {
+        byte[] bytes = new byte[32];
+        int length;
+        int count;
+        int lastSource;
+        int lastLineId;
+        long lastTimestamp;
+
+        /**
+         * @return bytes the postings grew by
+         */
+        synchronized int add(int source, int lineId, long timestamp) {
+            int grown = 0;
+            if (length + 30 > bytes.length) {
+                grown = bytes.length;
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            length = writeVarLong(bytes, length, zigzag(source - lastSource));
+            length = writeVarLong(bytes, length, zigzag(lineId - lastLineId));
+            length = writeVarLong(bytes, length, zigzag(timestamp - lastTimestamp));
+            lastSource = source;
+            lastLineId = lineId;
+            lastTimestamp = timestamp;
+            count++;
+            return grown;
+        }
+    }
+
+    /**
+     * Log lines of one entity while they are merged: source and LineId (for sorting) and timestamp, 16 bytes per line
+     */
+    private static class Lines {
+        final long[] lines;
+        final long[] timestamps;
+        int count;
+
+        /**
+         * @param capacity number of log lines of the entity in all cursors
+         */
+        Lines(int capacity) {
+            lines = new long[capacity];
+            timestamps = new long[capacity];
+        }
+
+        void add(int source, int lineId, long timestamp) {
+            lines[count] = (long) source << 32 | lineId & 0xffffffffL;
+            timestamps[count] = timestamp;
+            count++;
+        }
+
+        void add(Postings postings) {
+            int source = 0;
+            int lineId = 0;
+            long timestamp = 0;
+            int[] position = {0};
+            for (int i = 0; i < postings.count; i++) {
+                source += (int) unzigzag(readVarLong(postings.bytes, position));
+                lineId += (int) unzigzag(readVarLong(postings.bytes, position));
+                timestamp += unzigzag(readVarLong(postings.bytes, position));
+                add(source, lineId, timestamp);
+            }
+        }
+    }
+
+    /**
+     * Entities in key order, of the memory or of a spilled file
+     */
+    private interface Cursor {
+        byte[] key();
+
+        int count(); // log lines of the current entity
+
+        void addTo(Lines lines);
+
+        boolean next();
+    }
+
+    private final Path segmentPath;
+    private final long maxBufferedBytes;
+
+    private final Map<String, Postings> entities = new ConcurrentHashMap<>();
+    private final Map<String, Integer> sourceIds = new ConcurrentHashMap<>();
+    private final List<String> sources = new ArrayList<>();
+    private final AtomicLong bufferedBytes = new AtomicLong();
+    private final ReadWriteLock spilling = new ReentrantReadWriteLock();
+    private final List<Path> spills = new ArrayList<>();
+
+    /**
+     * @param path index path, e.g. output/log_KG.idx; the run adds the next segment (log_KG-00001.idx, ...)
+     * @throws IOException
+     */
+    public EntityIndexBuilder(Path path) throws IOException {
+        this(path, DEFAULT_MAX_BUFFERED_BYTES);
+    }
+
+    /**
+     * @param path             index path
+     * @param maxBufferedBytes memory of the postings before they are spilled to a file
+     * @throws IOException
+     */
+    public EntityIndexBuilder(Path path, long maxBufferedBytes) throws IOException {
+        this.segmentPath = EntityIndex.segmentPath(path, EntityIndex.lastSegment(path) + 1);
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    /**
+     * @return the segment of this run
+     */
+    public Path segmentPath() {
+        return segmentPath;
+    }
+
+    /**
+     * @param entity    entity IRI
+     * @param source    name of the log source
+     * @param lineId
+     * @param timestamp epoch seconds, LogLineBatch.NO_TIMESTAMP if the line has none
+     */
+    public void add(String entity, String source, int lineId, long timestamp) {
+        Integer sourceId = sourceIds.get(source);
+        if (sourceId == null) {
+            sourceId = sourceIds.computeIfAbsent(source, name -> {
+                synchronized (sources) {
+                    sources.add(name);
+                    return sources.size() - 1;
+                }
+            });
+        }
+
+        long grown = 0;
+        spilling.readLock().lock();
+        try {
+            Postings postings = entities.get(entity);
+            if (postings == null) {
+                Postings created = new Postings();
+                postings = entities.putIfAbsent(entity, created);
+                if (postings == null) {
+                    postings = created;
+                    grown = ENTITY_BYTES + 2L * entity.length() + created.bytes.length;
+                }
+            }
+            grown += postings.add(sourceId, lineId, timestamp);
+        } finally {
+            spilling.readLock().unlock();
+        }
+
+        if (grown > 0 && bufferedBytes.addAndGet(grown) > maxBufferedBytes) {
+            try {
+                spill();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error spilling the entity index to " + segmentPath, e);
+            }
+        }
+    }
+
+    /**
+     * Write the postings in memory to a sorted file and free them
+     */
+    private void spill() throws IOException {
+        spilling.writeLock().lock();
+        try {
+            if (bufferedBytes.get() <= maxBufferedBytes)
+                return; // another worker spilled them
+            Path spill = segmentPath.resolveSibling(segmentPath.getFileName() + ".spill" + (spills.size() + 1));
+            writeSegment(spill, Collections.singletonList(memory()));
+            spills.add(spill);
+            entities.clear();
+            bufferedBytes.set(0);
+        } finally {
+            spilling.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Write the segment of the run: the spilled files merged with the postings in memory, see EntityIndex for the
+     * format. Call after the last add.
+     *
+     * @return number of entities in the segment
+     * @throws IOException
+     */
+    public int write() throws IOException {
+        int entities;
+        List<EntityIndex.Segment> spilled = new ArrayList<>();
+        try {
+            List<Cursor> cursors = new ArrayList<>();
+            cursors.add(memory());
+            for (Path spill : spills) {
+                EntityIndex.Segment segment = new EntityIndex.Segment(spill);
+                spilled.add(segment);
+                cursors.add(cursor(segment));
+            }
+            entities = writeSegment(segmentPath, cursors);
+        } finally {
+            for (EntityIndex.Segment segment : spilled)
+                segment.close();
+        }
+        for (Path spill : spills)
+            Files.delete(spill);
+        spills.clear();
+        this.entities.clear();
+        return entities;
+    }
+
+    /**
+     * @return the entities in memory, sorted by the UTF-8 bytes of their IRIs
+     */
+    private Cursor memory() {
+        List<Map.Entry<byte[], Postings>> sorted = new ArrayList<>(entities.size());
+        for (Map.Entry<String, Postings> entity : entities.entrySet())
+            sorted.add(new AbstractMap.SimpleEntry<>(entity.getKey().getBytes(StandardCharsets.UTF_8), entity.getValue()));
+        sorted.sort((a, b) -> compareBytes(a.getKey(), b.getKey()));
+
+        return new Cursor() {
+            int entity = -1;
+
+            @Override
+            public byte[] key() {
+                return sorted.get(entity).getKey();
+            }
+
+            @Override
+            public int count() {
+                return sorted.get(entity).getValue().count;
+            }
+
+            @Override
+            public void addTo(Lines lines) {
+                lines.add(sorted.get(entity).getValue());
+            }
+
+            @Override
+            public boolean next() {
+                return ++entity < sorted.size();
+            }
+        };
+    }
+
+    /**
+     * @return the entities of a spilled file, their sources mapped to the ones of the builder
+     */
+    private Cursor cursor(EntityIndex.Segment segment) {
+        return new Cursor() {
+            int entity = -1;
+            byte[] key;
+
+            @Override
+            public byte[] key() {
+                return key;
+            }
+
+            @Override
+            public int count() {
+                return segment.count(entity);
+            }
+
+            @Override
+            public void addTo(Lines lines) {
+                segment.postings(entity, (source, lineId, timestamp) ->
+                        lines.add(sourceIds.get(segment.source(source)), lineId, timestamp));
+            }
+
+            @Override
+            public boolean next() {
+                if (++entity >= segment.size())
+                    return false;
+                key = segment.key(entity);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Write an index file with the entities of the cursors, the postings of an entity of several cursors merged
+     *
+     * @return number of entities written
+     */
+    private int writeSegment(Path path, List<Cursor> cursors) throws IOException {
+        PriorityQueue<Cursor> pending = new PriorityQueue<>((a, b) -> compareBytes(a.key(), b.key()));
+        for (Cursor cursor : cursors) {
+            if (cursor.next())
+                pending.add(cursor);
+        }
+
+        if (path.toAbsolutePath().getParent() != null)
+            Files.createDirectories(path.toAbsolutePath().getParent());
+        SegmentedOutput.CountingOutputStream counter = new SegmentedOutput.CountingOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+        try (DataOutputStream out = new DataOutputStream(counter)) {
+            out.writeInt(EntityIndex.MAGIC);
+            out.writeShort(EntityIndex.VERSION);
+
+            long[] entries = new long[1024];
+            int count = 0;
+            List<Cursor> current = new ArrayList<>();
+            while (!pending.isEmpty()) {
+                byte[] key = pending.peek().key();
+                int lineCount = 0;
+                while (!pending.isEmpty() && Arrays.equals(pending.peek().key(), key)) {
+                    Cursor cursor = pending.poll();
+                    lineCount += cursor.count();
+                    current.add(cursor);
+                }
+                Lines lines = new Lines(lineCount);
+                for (Cursor cursor : current) {
+                    cursor.addTo(lines);
+                    if (cursor.next())
+                        pending.add(cursor);
+                }
+                current.clear();
+
+                if (count == entries.length)
+                    entries = Arrays.copyOf(entries, count * 2);
+                entries[count++] = counter.count;
+                out.writeInt(key.length);
+                out.write(key);
+                writePostings(lines, out);
+            }
+
+            List<String> sources;
+            synchronized (this.sources) {
+                sources = new ArrayList<>(this.sources);
+            }
+            long sourcesOffset = counter.count;
+            out.writeInt(sources.size());
+            for (String source : sources) {
+                byte[] name = source.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(name.length);
+                out.write(name);
+            }
+
+            long tableOffset = counter.count;
+            for (int i = 0; i < count; i++)
+                out.writeLong(entries[i]);
+
+            out.writeLong(sourcesOffset);
+            out.writeLong(tableOffset);
+            out.writeInt(count);
+            out.writeInt(EntityIndex.MAGIC);
+            return count;
+        }
+    }
+
+    /**
+     * Sort the log lines of an entity by source and LineId (dropping repeats of a line) and write them
+     */
+    private static void writePostings(Lines postings, OutputStream out) throws IOException {
+        int count = postings.count;
+        long[] lines = postings.lines;
+        long[] timestamps = postings.timestamps;
+        sort(lines, timestamps, count);
+
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || lines[i] != lines[i - 1])
+                unique++;
+        }
+        writeVarLong(out, unique);
+        long previous = -1;
+        long previousTimestamp = 0;
+        for (int i = 0; i < count; i++) {
+            long line = lines[i];
+            if (line == previous)
+                continue;
+            int sourceDelta = previous < 0 ? (int) (line >>> 32) : (int) ((line >>> 32) - (previous >>> 32));
+            writeVarLong(out, sourceDelta);
+            writeVarLong(out, sourceDelta > 0 || previous < 0 ? (int) line : (int) line - (int) previous);
+            writeVarLong(out, zigzag(timestamps[i] - previousTimestamp));
+            previous = line;
+            previousTimestamp = timestamps[i];
+        }
+    }
+
+    /**
+     * Sort the log lines by source and LineId, their timestamps along with them. In place (heapsort), a hot entity
+     * with many lines needs no memory besides its two arrays; lines mostly arrive in order, so sorted input is
+     * detected first.
+     */
+    static void sort(long[] lines, long[] timestamps, int count) {
+        int i = 1;
+        while (i < count && lines[i - 1] <= lines[i])
+            i++;
+        if (i >= count)
+            return;
+
+        for (int parent = count / 2 - 1; parent >= 0; parent--)
+            siftDown(lines, timestamps, parent, count);
+        for (int end = count - 1; end > 0; end--) {
+            swap(lines, timestamps, 0, end);
+            siftDown(lines, timestamps, 0, end);
+        }
+    }
+
+    private static void siftDown(long[] lines, long[] timestamps, int parent, int count) {
+        while (true) {
+            int child = 2 * parent + 1;
+            if (child >= count)
+                return;
+            if (child + 1 < count && lines[child + 1] > lines[child])
+                child++;
+            if (lines[parent] >= lines[child])
+                return;
+            swap(lines, timestamps, parent, child);
+            parent = child;
+        }
+    }
+
+    private static void swap(long[] lines, long[] timestamps, int a, int b) {
+        long line = lines[a];
+        lines[a] = lines[b];
+        lines[b] = line;
+        long timestamp = timestamps[a];
+        timestamps[a] = timestamps[b];
+        timestamps[b] = timestamp;
+    }
+
+    static long zigzag(long value) {
+        return value << 1 ^ value >> 63;
+    }
+
+    static long unzigzag(long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    private static int writeVarLong(byte[] bytes, int offset, long value) {
+        while ((value & ~0x7fL) != 0) {
+            bytes[offset++] = (byte) (value & 0x7f | 0x80);
+            value >>>= 7;
+        }
+        bytes[offset++] = (byte) value;
+        return offset;
+    }
+
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) (value & 0x7f | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(byte[] bytes, int[] position) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = bytes[position[0]++];
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0)
+                return value;
+        }
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            int compared = (a[i] & 0xff) - (b[i] & 0xff);
+            if (compared != 0)
+                return compared;
+        }
+        return a.length - b.length;
+    }
+}
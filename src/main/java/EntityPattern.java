@@ -11,6 +11,7 @@ public class EntityPattern implements Cloneable {
     public Pattern pattern;
     public EnumPatternType type;
     public int position;
+    public String[] literals; // prefilter: the pattern can only match text containing one of these ('#' = any digit)
 
     public EntityPattern(){
 
@@ -28,4 +29,10 @@ public class EntityPattern implements Cloneable {
         this.isObject = isObject;
         this.type = type;
     }
+
+    public EntityPattern(String className, String propertyName, Boolean isObject, Pattern pattern,
+            EnumPatternType type, String... literals) {
+        this(className, propertyName, isObject, pattern, type);
+        this.literals = literals;
+    }
 }
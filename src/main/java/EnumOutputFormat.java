@@ -0,0 +1,20 @@
+import org.apache.jena.riot.RDFFormat;
+
+/**
+ * Enum type of serialization formats for the log KG output
+ */
+public enum EnumOutputFormat {
+    Turtle(".ttl", RDFFormat.TURTLE_BLOCKS, RDFFormat.TURTLE), // readable, streamed as Turtle blocks
+    NTriples(".nt", RDFFormat.NTRIPLES_UTF8, RDFFormat.NTRIPLES_UTF8), // one triple per line, fast to write and to bulk load
+    Thrift(".trdf", RDFFormat.RDF_THRIFT, RDFFormat.RDF_THRIFT); // binary RDF Thrift, compact and fastest to parse
+
+    public final String extension;
+    public final RDFFormat streamFormat; // used by the Stream output type
+    public final RDFFormat modelFormat; // used by the Model output type
+
+    EnumOutputFormat(String extension, RDFFormat streamFormat, RDFFormat modelFormat) {
+        this.extension = extension;
+        this.streamFormat = streamFormat;
+        this.modelFormat = modelFormat;
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * Enum type of output backends for the log KG
+ */
+public enum EnumOutputType {
+    Model, // add everything to the in-memory OntModel and write it into the output file at the end (see EnumOutputFormat)
+    Stream, // stream the log KG into the output file (see EnumOutputFormat), the OntModel only keeps the templates
+    TDB2 // load the log KG into an embedded TDB2 store (--store), its templates are kept in the same store
+}
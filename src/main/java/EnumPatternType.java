@@ -3,5 +3,6 @@
  */
 public enum EnumPatternType {
     Parameter, // check only against parameter value within parameter list
-    LogLine // regex which needs to include not only parameter value, but also surrounding text in the log line
+    LogLine, // regex which needs to include not only parameter value, but also surrounding text in the log line
+    NamedEntity // no regex, the parameter value was classified by the NER model (see NerClassifier)
 }
@@ -0,0 +1,31 @@
+/**
+ * Enum type of time buckets the sharded output (see ShardedOutput) splits the log KG into
+ */
+public enum EnumShardBucket {
+    Hour(3600, 13), // e.g. log_KG-OpenSSH_2k_A-sshd-2019-12-10T06.nt
+    Day(86400, 10); // e.g. log_KG-OpenSSH_2k_A-sshd-2019-12-10.nt
+
+    public final long seconds;
+    private final int nameLength; // prefix of the formatted bucket start that names the bucket
+
+    EnumShardBucket(long seconds, int nameLength) {
+        this.seconds = seconds;
+        this.nameLength = nameLength;
+    }
+
+    /**
+     * @param timestamp epoch seconds, LogLineBatch.NO_TIMESTAMP for lines without one
+     * @return start of the bucket of the timestamp
+     */
+    public long start(long timestamp) {
+        return timestamp == LogLineBatch.NO_TIMESTAMP ? timestamp : Math.floorDiv(timestamp, seconds) * seconds;
+    }
+
+    /**
+     * @param start start of a bucket
+     * @return name of the bucket, notime for lines without a timestamp
+     */
+    public String name(long start) {
+        return start == LogLineBatch.NO_TIMESTAMP ? "notime" : TimestampParser.format(start).substring(0, nameLength);
+    }
+}
@@ -0,0 +1,257 @@
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Follows a structured log file (or all structured log files of a directory) and hands newly appended
+ * records to a handler, chunk by chunk.
+ * <p>
+ * After each chunk the byte offset of the file and its identity (file key and a checksum of its first bytes) are
+ * saved in a checkpoint file, together with the length of the output file. On restart, reading resumes at the saved
+ * offsets and the output is cut back to the saved length, so a chunk that was written but not checkpointed is
+ * neither lost nor duplicated. A file that was truncated or replaced (log rotation) is read again from the start.
+ */
+public class LogFollower {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LogFollower.class);
+
+    private static final String STRUCTURED_SUFFIX = "_structured.csv";
+    private static final String OUTPUT_LENGTH = "output.length";
+    private static final int HEAD_BYTES = 1024; // first bytes of a file whose checksum identifies it
+
+    /**
+     * Processes the records of one chunk, e.g. by writing their triples to the output
+     */
+    public interface ChunkHandler {
+        void handle(Path file, List<CSVRecord> records) throws IOException;
+    }
+
+    private final Path source;
+    private final Path checkpointPath;
+    private final Path outputPath;
+    private final long pollMillis;
+    private final int maxChunkBytes;
+
+    private final Properties checkpoint = new Properties();
+    private final Map<String, String[]> headers = new HashMap<>();
+
+    public LogFollower(Path source, Path checkpointPath, Path outputPath, long pollMillis, int maxChunkBytes) {
+        this.source = source;
+        this.checkpointPath = checkpointPath;
+        this.outputPath = outputPath;
+        this.pollMillis = pollMillis;
+        this.maxChunkBytes = maxChunkBytes;
+    }
+
+    /**
+     * Follow the source until the thread is interrupted
+     *
+     * @param handler
+     * @throws IOException
+     */
+    public void run(ChunkHandler handler) throws IOException {
+        restore();
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                boolean readAnything = false;
+                for (Path file : files())
+                    readAnything |= poll(file, handler);
+
+                if (!readAnything)
+                    Thread.sleep(pollMillis);
+            }
+        } catch (InterruptedException | ClosedByInterruptException e) {
+            Thread.currentThread().interrupt(); // a chunk that was cut off is read again from its checkpoint
+        }
+        LOG.info("Stopped following " + source);
+    }
+
+    /**
+     * Load the checkpoint and cut the output back to the checkpointed length
+     */
+    private void restore() throws IOException {
+        if (!Files.exists(checkpointPath))
+            return;
+
+        try (Reader reader = Files.newBufferedReader(checkpointPath, StandardCharsets.UTF_8)) {
+            checkpoint.load(reader);
+        }
+
+        String outputLength = checkpoint.getProperty(OUTPUT_LENGTH);
+        if (outputLength != null && Files.exists(outputPath) && Files.size(outputPath) > Long.parseLong(outputLength)) {
+            LOG.warn("Removing output written after the last checkpoint from " + outputPath);
+            try (FileChannel channel = FileChannel.open(outputPath, StandardOpenOption.WRITE)) {
+                channel.truncate(Long.parseLong(outputLength));
+            }
+        }
+        LOG.info("Resuming from checkpoint " + checkpointPath);
+    }
+
+    /**
+     * Save the checkpoint atomically, together with the current length of the output
+     */
+    private void save() throws IOException {
+        if (Files.exists(outputPath))
+            checkpoint.setProperty(OUTPUT_LENGTH, String.valueOf(Files.size(outputPath)));
+
+        if (checkpointPath.toAbsolutePath().getParent() != null)
+            Files.createDirectories(checkpointPath.toAbsolutePath().getParent());
+        Path temp = checkpointPath.resolveSibling(checkpointPath.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            checkpoint.store(writer, "semantic-log-parser follow checkpoint");
+        }
+        Files.move(temp, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private List<Path> files() throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (Files.isDirectory(source)) {
+            try (Stream<Path> children = Files.list(source)) {
+                children.filter(file -> file.getFileName().toString().endsWith(STRUCTURED_SUFFIX))
+                        .sorted()
+                        .forEach(files::add);
+            }
+        } else if (Files.exists(source)) {
+            files.add(source);
+        }
+        return files;
+    }
+
+    /**
+     * Read the complete records appended to the file since the last checkpoint and hand them to the handler
+     *
+     * @return true if records were read
+     */
+    private boolean poll(Path file, ChunkHandler handler) throws IOException {
+        String key = file.toAbsolutePath().normalize().toString();
+        long offset = Long.parseLong(checkpoint.getProperty(key + ".offset", "0"));
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < offset) {
+                LOG.warn("File " + file + " was truncated, reading it again from the start");
+                offset = 0;
+            } else if (offset > 0 && !sameFile(file, key, channel)) {
+                LOG.warn("File " + file + " was replaced, reading it again from the start");
+                offset = 0;
+            }
+            if (offset == 0)
+                headers.remove(key);
+            if (size == offset)
+                return false;
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size - offset, maxChunkBytes));
+            channel.read(buffer, offset);
+            byte[] bytes = buffer.array();
+
+            int end = completeRecordsEnd(bytes, buffer.position());
+            if (end == 0) {
+                if (buffer.position() == maxChunkBytes)
+                    throw new IOException("Record at offset " + offset + " of " + file + " is larger than " + maxChunkBytes + " bytes");
+                return false; // the last record is still being written
+            }
+
+            String[] header = header(file);
+            String chunk = new String(bytes, 0, end, StandardCharsets.UTF_8);
+            CSVFormat format = CSVFormat.DEFAULT.withHeader(header);
+            if (offset == 0)
+                format = format.withSkipHeaderRecord();
+
+            List<CSVRecord> records = format.parse(new StringReader(chunk)).getRecords();
+            if (!records.isEmpty())
+                handler.handle(file, records);
+
+            checkpoint.setProperty(key + ".offset", String.valueOf(offset + end));
+            String fileKey = fileKey(file);
+            if (fileKey != null)
+                checkpoint.setProperty(key + ".fileKey", fileKey);
+            int headBytes = (int) Math.min(offset + end, HEAD_BYTES);
+            checkpoint.setProperty(key + ".head", headBytes + ":" + checksum(channel, headBytes));
+            save();
+            LOG.info("Processed " + records.size() + " new records of " + file);
+            return true;
+        }
+    }
+
+    /**
+     * @return false if the file key or the checksum of the first bytes differ from the checkpoint, i.e. another
+     * file was moved to the path or the file was rewritten
+     */
+    private boolean sameFile(Path file, String key, FileChannel channel) throws IOException {
+        String fileKey = checkpoint.getProperty(key + ".fileKey");
+        if (fileKey != null && !fileKey.equals(fileKey(file)))
+            return false;
+
+        String head = checkpoint.getProperty(key + ".head");
+        if (head == null)
+            return true;
+        String[] lengthChecksum = head.split(":", 2);
+        int headBytes = Integer.parseInt(lengthChecksum[0]);
+        return channel.size() >= headBytes && checksum(channel, headBytes) == Long.parseLong(lengthChecksum[1]);
+    }
+
+    /**
+     * @return the file key (e.g. device and inode), null if the file system has none
+     */
+    private static String fileKey(Path file) throws IOException {
+        Object fileKey = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+        return fileKey == null ? null : fileKey.toString();
+    }
+
+    /**
+     * @return CRC32 of the first length bytes of the file
+     */
+    private static long checksum(FileChannel channel, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0)
+                break;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        return crc.getValue();
+    }
+
+    /**
+     * @return the length of the bytes that only contain complete records, quoted line breaks are skipped
+     */
+    private static int completeRecordsEnd(byte[] bytes, int length) {
+        int end = 0;
+        boolean quoted = false;
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] == '"')
+                quoted = !quoted;
+            else if (bytes[i] == '\n' && !quoted)
+                end = i + 1;
+        }
+        return end;
+    }
+
+    private String[] header(Path file) throws IOException {
+        String key = file.toAbsolutePath().normalize().toString();
+        String[] header = headers.get(key);
+        if (header == null) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                CSVRecord record = CSVFormat.DEFAULT.parse(new StringReader(reader.readLine())).iterator().next();
+                header = new String[record.size()];
+                for (int i = 0; i < header.length; i++)
+                    header[i] = record.get(i);
+            }
+            headers.put(key, header);
+        }
+        return header;
+    }
+}
@@ -23,15 +23,42 @@ public class LogLine {
         this.EventDay = EventDay;
         this.EventTime = EventTime;
         this.Level = Level;
-        this.Component = Component.replaceAll("[\\[\\]]", "");
+        this.Component = stripBrackets(Component);
         this.Content = Content;
         this.EventId = EventId;
         this.EventTemplate = EventTemplate;
         this.ParameterList = ParameterList;
     }
 
+    /**
+     * Remove square brackets, e.g. sshd[24200] becomes sshd24200
+     *
+     * @param value
+     * @return value without brackets
+     */
+    public static String stripBrackets(String value) {
+        if (value.indexOf('[') < 0 && value.indexOf(']') < 0)
+            return value;
+
+        StringBuilder stripped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '[' && c != ']')
+                stripped.append(c);
+        }
+        return stripped.toString();
+    }
+
     public static LogLine fromOpenSSH(CSVRecord logLine) {
         return new LogLine(logLine.get(0), logLine.get(1), logLine.get(2), logLine.get(3), logLine.get(4),
-                logLine.get(5), logLine.get(6), logLine.get(7), logLine.get(8), logLine.get(9));
+                logLine.get(5), logLine.get(6), logLine.get(7), logLine.get(8), parameterList(logLine));
+    }
+
+    /**
+     * @param logLine
+     * @return the ParameterList column, empty if the data has none (parameters are extracted by their template)
+     */
+    static String parameterList(CSVRecord logLine) {
+        return logLine.size() > 9 ? logLine.get(9) : "";
     }
 }
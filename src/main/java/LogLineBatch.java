@@ -0,0 +1,228 @@
+import org.apache.commons.csv.CSVRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.text.ParseException;
+import java.util.List;
+
+/**
+ * Columnar representation of a batch of log lines.
+ * <p>
+ * LineIds are primitive ints and timestamps are pre-parsed epoch seconds. The low-cardinality columns (month,
+ * day, level, component, EventId, EventTemplate) are dictionary-encoded with dictionaries shared across batches.
+ * Time, Content and ParameterList are not copied, the batch keeps the strings of the underlying records.
+ * All lines of a batch come from the same log source.
+ */
+public class LogLineBatch {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LogLineBatch.class);
+
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    /**
+     * Dictionaries and timestamp parser shared by all batches of a run
+     */
+    public static class Dictionaries {
+        final StringDictionary months = new StringDictionary(64);
+        final StringDictionary days = new StringDictionary(64);
+        final StringDictionary levels = new StringDictionary(1024);
+        final StringDictionary components = new StringDictionary(1 << 16, LogLine::stripBrackets);
+        final StringDictionary eventIds = new StringDictionary(1 << 16);
+        final StringDictionary eventTemplates = new StringDictionary(1 << 16);
+        final TimestampParser timestampParser = new TimestampParser();
+    }
+
+    /**
+     * Dictionary-encoded column, values that do not fit into the dictionary any more are kept as they are
+     */
+    private static class DictionaryColumn {
+        private final StringDictionary dictionary;
+        private final int[] codes;
+        private String[] overflow;
+
+        DictionaryColumn(StringDictionary dictionary, int size) {
+            this.dictionary = dictionary;
+            this.codes = new int[size];
+        }
+
+        void set(int row, String value) {
+            codes[row] = dictionary.encode(value);
+            if (codes[row] == StringDictionary.NOT_ENCODED) {
+                if (overflow == null)
+                    overflow = new String[codes.length];
+                overflow[row] = dictionary.transform(value);
+            }
+        }
+
+        String get(int row) {
+            int code = codes[row];
+            return code == StringDictionary.NOT_ENCODED ? overflow[row] : dictionary.decode(code);
+        }
+    }
+
+    public final int size;
+    public final String source; // name of the log source, see LogSource
+
+    private final String[] times;
+    private final String[] contents;
+    private final String[] parameterLists;
+    private final int[] lineIds;
+    private final long[] timestamps;
+    private final DictionaryColumn months;
+    private final DictionaryColumn days;
+    private final DictionaryColumn levels;
+    private final DictionaryColumn components;
+    private final DictionaryColumn eventIds;
+    private final DictionaryColumn eventTemplates;
+
+    private LogLineBatch(int size, String source, Dictionaries dictionaries) {
+        this.size = size;
+        this.source = source;
+        times = new String[size];
+        contents = new String[size];
+        parameterLists = new String[size];
+        lineIds = new int[size];
+        timestamps = new long[size];
+        months = new DictionaryColumn(dictionaries.months, size);
+        days = new DictionaryColumn(dictionaries.days, size);
+        levels = new DictionaryColumn(dictionaries.levels, size);
+        components = new DictionaryColumn(dictionaries.components, size);
+        eventIds = new DictionaryColumn(dictionaries.eventIds, size);
+        eventTemplates = new DictionaryColumn(dictionaries.eventTemplates, size);
+    }
+
+    /**
+     * Build a batch from structured OpenSSH records (same columns as LogLine.fromOpenSSH)
+     *
+     * @param records
+     * @param source
+     * @param dictionaries
+     * @return LogLineBatch
+     */
+    public static LogLineBatch fromOpenSSH(List<CSVRecord> records, String source, Dictionaries dictionaries) {
+        LogLineBatch batch = new LogLineBatch(records.size(), source, dictionaries);
+        for (int row = 0; row < batch.size; row++) {
+            CSVRecord record = records.get(row);
+            batch.set(row, Integer.parseInt(record.get(0)), record.get(1), record.get(2), record.get(3), record.get(4),
+                    record.get(5), record.get(6), record.get(7), record.get(8), LogLine.parameterList(record), dictionaries);
+        }
+        return batch;
+    }
+
+    /**
+     * Build a batch from records of the memory-mapped reader, their fields are decoded here on the worker
+     *
+     * @param rows
+     * @param source
+     * @param dictionaries
+     * @return LogLineBatch
+     */
+    public static LogLineBatch fromCsvRows(List<MappedCsvReader.Row> rows, String source, Dictionaries dictionaries) {
+        LogLineBatch batch = new LogLineBatch(rows.size(), source, dictionaries);
+        String[] fields = new String[10]; // columns after ParameterList are not decoded
+        for (int row = 0; row < batch.size; row++) {
+            int count = rows.get(row).decode(fields);
+            if (count < 9)
+                throw new IllegalArgumentException("Record with " + count + " columns, expected at least 9");
+            batch.set(row, Integer.parseInt(fields[0]), fields[1], fields[2], fields[3], fields[4], fields[5],
+                    fields[6], fields[7], fields[8], count > 9 ? fields[9] : "", dictionaries);
+        }
+        return batch;
+    }
+
+    /**
+     * Build a batch from LogLine objects, e.g. lines of a raw log mined by the TemplateMiner
+     *
+     * @param lines
+     * @param source
+     * @param dictionaries
+     * @return LogLineBatch
+     */
+    public static LogLineBatch fromLogLines(List<LogLine> lines, String source, Dictionaries dictionaries) {
+        LogLineBatch batch = new LogLineBatch(lines.size(), source, dictionaries);
+        for (int row = 0; row < batch.size; row++) {
+            LogLine line = lines.get(row);
+            batch.set(row, line.LineId, line.EventMonth, line.EventDay, line.EventTime, line.Level, line.Component,
+                    line.Content, line.EventId, line.EventTemplate, line.ParameterList, dictionaries);
+        }
+        return batch;
+    }
+
+    private void set(int row, int lineId, String month, String day, String time, String level, String component,
+                     String content, String eventId, String eventTemplate, String parameterList, Dictionaries dictionaries) {
+        lineIds[row] = lineId;
+        months.set(row, month);
+        days.set(row, day);
+        times[row] = time;
+        levels.set(row, level);
+        components.set(row, component);
+        contents[row] = content;
+        eventIds.set(row, eventId);
+        eventTemplates.set(row, eventTemplate);
+        parameterLists[row] = parameterList;
+
+        try {
+            timestamps[row] = dictionaries.timestampParser.parse(month, day, time);
+        } catch (ParseException e) {
+            LOG.warn("Invalid timestamp in logline-" + lineId + ": " + e.getMessage());
+            timestamps[row] = NO_TIMESTAMP;
+        }
+    }
+
+    public int lineId(int row) {
+        return lineIds[row];
+    }
+
+    public String month(int row) {
+        return months.get(row);
+    }
+
+    public String day(int row) {
+        return days.get(row);
+    }
+
+    public String time(int row) {
+        return times[row];
+    }
+
+    public String level(int row) {
+        return levels.get(row);
+    }
+
+    public String component(int row) {
+        return components.get(row);
+    }
+
+    public String content(int row) {
+        return contents[row];
+    }
+
+    public String eventId(int row) {
+        return eventIds.get(row);
+    }
+
+    public String eventTemplate(int row) {
+        return eventTemplates.get(row);
+    }
+
+    public String parameterList(int row) {
+        return parameterLists[row];
+    }
+
+    /**
+     * @param row
+     * @return epoch seconds, or NO_TIMESTAMP if the timestamp could not be parsed
+     */
+    public long timestamp(int row) {
+        return timestamps[row];
+    }
+
+    /**
+     * @param row
+     * @return the row as a LogLine object
+     */
+    public LogLine get(int row) {
+        return new LogLine(String.valueOf(lineIds[row]), month(row), day(row), times[row], level(row), component(row),
+                contents[row], eventId(row), eventTemplate(row), parameterLists[row]);
+    }
+}
@@ -0,0 +1,93 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * A log source: a structured log data CSV plus its templates CSV. The EventIds of a source are only unique within
+ * the source, its name keeps the log entries of different sources apart.
+ */
+public class LogSource {
+
+    private static final String STRUCTURED_SUFFIX = "_structured.csv";
+    private static final String TEMPLATES_SUFFIX = "_templates.csv";
+
+    public final String name;
+    public final Path templates;
+    public final Path data;
+
+    public LogSource(String name, Path templates, Path data) {
+        this.name = name;
+        this.templates = templates;
+        this.data = data;
+    }
+
+    /**
+     * @param data e.g. ./input/openSSH/OpenSSH_2k_A.log_structured.csv
+     * @return the source of the data file, its templates file is next to it (OpenSSH_2k_A.log_templates.csv)
+     */
+    public static LogSource of(Path data) {
+        String fileName = data.getFileName().toString();
+        if (!fileName.endsWith(STRUCTURED_SUFFIX))
+            throw new IllegalArgumentException("Not a structured log data file: " + data);
+        Path templates = data.resolveSibling(fileName.substring(0, fileName.length() - STRUCTURED_SUFFIX.length()) + TEMPLATES_SUFFIX);
+        return new LogSource(name(data), templates, data);
+    }
+
+    /**
+     * @param paths comma separated data files and directories, directories are searched for *_structured.csv files
+     * @return the sources in the order given, files of a directory sorted by path; sources with the same name
+     * get a numbered suffix (OpenSSH_2k_A_2) so their EventIds stay apart
+     * @throws IOException
+     */
+    public static List<LogSource> list(String paths) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String path : paths.split(",")) {
+            Path file = Paths.get(path.trim());
+            if (!Files.isDirectory(file)) {
+                files.add(file);
+                continue;
+            }
+
+            try (Stream<Path> children = Files.walk(file)) {
+                children.filter(child -> child.getFileName().toString().endsWith(STRUCTURED_SUFFIX))
+                        .sorted()
+                        .forEach(files::add);
+            }
+        }
+
+        List<LogSource> sources = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (Path file : files) {
+            LogSource source = of(file);
+            String name = source.name;
+            for (int n = 2; !names.add(name); n++)
+                name = source.name + "_" + n;
+            sources.add(new LogSource(name, source.templates, source.data));
+        }
+        return sources;
+    }
+
+    /**
+     * @param file a log file, e.g. OpenSSH_2k_A.log_structured.csv or OpenSSH_2k.log
+     * @return the name of the source for entry IRIs, e.g. OpenSSH_2k_A
+     */
+    public static String name(Path file) {
+        String name = file.getFileName().toString();
+        if (name.endsWith(STRUCTURED_SUFFIX))
+            name = name.substring(0, name.length() - STRUCTURED_SUFFIX.length());
+        if (name.endsWith(".log"))
+            name = name.substring(0, name.length() - 4);
+        return EntityCache.sanitize(name);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -1,29 +1,45 @@
 import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
-import org.apache.commons.lang3.StringUtils;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.ontology.*;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.rdf.model.StmtIterator;
 import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.lang.CollectorStreamTriples;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.TDB2Factory;
 import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.vocabulary.RDF;
 import org.apache.jena.vocabulary.RDFS;
-import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.swing.text.html.parser.Entity;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 public class Main {
 
@@ -40,89 +56,667 @@ public class Main {
     static String regexUser = "(user|usr|ruser|uid|euid)(:|-|\\s)(\\w+)";
     static String regexPort = "(port)(:|-|\\s)(\\d+)";
 
-    // TODO: will be replaced by JAVA args later on
+    // defaults, can be overridden by args (see parseArgs)
     private static String logTemplate = "./input/openSSH/OpenSSH_2k_A.log_templates.csv";
     private static String logData = "./input/openSSH/OpenSSH_2k_A.log_structured.csv";
+    private static String rawLog = null; // raw syslog file, templates are mined on the fly instead of read from the CSVs
+    private static String sources = null; // data files and directories parsed concurrently instead of logData, see LogSource.list
     private static String parserFilePath = "src/main/resources/parser.ttl";
-
-    private static Map<String, String> templateIdMappings = new HashMap<>();
+    private static String catalogFilePath = "templates.catalog";
+    private static String outputFilePath = "output/log_KG.ttl";
+    private static EnumOutputType outputType = EnumOutputType.Stream;
+    private static EnumOutputFormat outputFormat = EnumOutputFormat.Turtle;
+    private static boolean gzipOutput = false;
+    private static long segmentTriples = 0; // rotate the output after this many triples, 0 = single file
+    private static long segmentBytes = 0; // rotate the output after about this many bytes, 0 = single file
+    private static EnumShardBucket shardBy = null; // shards per source, component and time bucket, see ShardedOutput
+    private static int maxOpenShards = 64; // shards whose writer is kept open, the others are reopened to append
+
+    // TDB2 output: the log KG goes into the default graph, the templates into TEMPLATE_GRAPH of the same store
+    private static String storePath = "output/log_KG_tdb2";
+    private static long storeBatchTriples = 0; // triples per write transaction, 0 = bulk loader in one transaction
+    static final Node TEMPLATE_GRAPH = NodeFactory.createURI(NS_INSTANCE + "templates");
+    private static DatasetGraph store;
+
+    // pipeline settings for parsing log lines, a single worker parses sequentially on the main thread
+    private static int workerThreads = Runtime.getRuntime().availableProcessors();
+    private static int pipelineBatchSize = 1000;
+    private static int pipelineQueueCapacity = 4 * workerThreads;
+    private static final LogLineBatch.Dictionaries dictionaries = new LogLineBatch.Dictionaries();
+
+    // several sources: up to workerThreads sources at the same time, sharing the workers and a single output writer
+    private static final int SHARED_OUTPUT_BATCH_TRIPLES = 10_000;
+
+    // line-aligned chunks each source is split into, read in parallel like separate sources (see MappedCsvReader.split)
+    private static int readersPerSource = 1;
+
+    // new templates are annotated one at a time, so sources with the same template only annotate it once
+    private static final Object annotationLock = new Object();
+
+    // per-stage timers and counters, exposed through JMX and logged every metricsIntervalSeconds (0 = only at the end)
+    static final ParserMetrics metrics = new ParserMetrics();
+    private static long metricsIntervalSeconds = 30;
+
+    // optional NER for parameter values no pattern recognizes (--ner), the model is only loaded on first use
+    private static boolean nerEnabled = false;
+    private static String nerModel = NerClassifier.DEFAULT_MODEL;
+    private static int nerCacheSize = NerClassifier.DEFAULT_CACHE_SIZE; // values whose NER label is kept
+    static NerClassifier ner;
+
+    // summaries of the lines per template, entities and time window (0 = no aggregation), see WindowAggregator
+    private static long aggregateWindowSeconds = 0;
+    private static boolean aggregateOnly = false; // only the summaries, no log entries of the summarized lines
+
+    // inverted index from entity IRIs to their log lines, written next to the log KG at the end of the run (--entityIndex)
+    private static String entityIndexPath = null;
+    private static long entityIndexBufferBytes = EntityIndexBuilder.DEFAULT_MAX_BUFFERED_BYTES; // spilled to disk beyond
+    static EntityIndexBuilder entityIndex;
+
+    // entity IRIs of recently seen parameter values, their type and label are only emitted when they are new
+    private static int entityCacheSize = 100_000;
+    static EntityCache entityCache = new EntityCache(entityCacheSize);
+
+    // follow mode: keep watching logData (a file or a directory) for appended records
+    private static boolean follow = false;
+    private static String checkpointFilePath = "output/follow.checkpoint";
+    private static long followPollMillis = 1000;
+    private static int followChunkBytes = 16 * 1024 * 1024;
 
     /**
-     * Main function - will be updated later to allow args parameterization
+     * Main function, args are optional --name=value pairs overriding the defaults above, see parseArgs
      *
      * @param args
      * @throws IOException
      */
     public static void main(String[] args) throws IOException {
+        parseArgs(args);
+
+        List<EntityPattern> patterns = defaultPatterns();
+        if (nerEnabled)
+            ner = new NerClassifier(nerModel, nerCacheSize, metrics);
+        if (entityIndexPath != null)
+            entityIndex = new EntityIndexBuilder(Paths.get(entityIndexPath), entityIndexBufferBytes);
+
+        OntModel dataModel = ModelFactory.createOntologyModel(OntModelSpec.OWL_DL_MEM);
+        // the TDB2 store keeps its templates itself, the catalog is not used then
+        TemplateCatalog catalog = outputType == EnumOutputType.TDB2 ? null : new TemplateCatalog(Paths.get(catalogFilePath));
+        if (outputType == EnumOutputType.TDB2)
+            store = TDB2Factory.connectDataset(storePath).asDatasetGraph();
+
+        // the ontology is only needed for the model output, to migrate its templates into a new catalog or store
+        boolean storedTemplates = store != null && Txn.calculateRead(store, () -> !store.getGraph(TEMPLATE_GRAPH).isEmpty());
+        if (storedTemplates) {
+            Txn.executeRead(store, () -> dataModel.add(ModelFactory.createModelForGraph(store.getGraph(TEMPLATE_GRAPH))));
+        } else if (outputType != EnumOutputType.Stream || !catalog.exists()) {
+            InputStream is = Main.class.getClassLoader().getResourceAsStream(parserFilePath.substring(parserFilePath.lastIndexOf("/") + 1));
+            RDFDataMgr.read(dataModel, is, Lang.TURTLE);
+        }
+
+        TemplateRegistry templateRegistry = new TemplateRegistry();
+
+        // load existing templates
+        if (store != null) {
+            loadExistingTemplates(dataModel, templateRegistry);
+            LOG.info("Loaded " + templateRegistry.size() + " templates from " + (storedTemplates ? storePath : parserFilePath));
+        } else if (catalog.exists()) {
+            int count = catalog.load(templateRegistry);
+            LOG.info("Loaded " + count + " templates from " + catalogFilePath);
+        } else {
+            loadExistingTemplates(dataModel, templateRegistry);
+            catalog.append(templateRegistry.templates());
+            LOG.info("Migrated " + templateRegistry.size() + " templates from " + parserFilePath + " to " + catalogFilePath);
+        }
+
+        PatternSet patternSet = new PatternSet(patterns, metrics);
+        declareVocabulary(dataModel, patterns);
+
+        metrics.register();
+        metrics.startReporting(metricsIntervalSeconds);
+        try {
+            if (follow) {
+                followLogData(patternSet, dataModel, templateRegistry, catalog);
+                return;
+            }
+
+            if (rawLog != null) {
+                parseRawLog(patternSet, dataModel, templateRegistry, catalog);
+                writeEntityIndex();
+                return;
+            }
+
+            List<LogSource> logSources = sources != null ? LogSource.list(sources)
+                    : Collections.singletonList(new LogSource(LogSource.name(Paths.get(logData)), Paths.get(logTemplate), Paths.get(logData)));
+            int parallelSources = Math.min(logSources.size(), Math.max(1, workerThreads));
+
+            // get all templates plus occurrences of patterns plus properties
+            forEachSource(logSources, parallelSources,
+                    source -> annotateSource(patternSet, source, dataModel, templateRegistry, catalog));
+
+            // stream the log lines record by record, they are never held in memory as a whole
+            StreamRDF output = openOutput(dataModel, false);
+            output.start();
+            try {
+                parseSources(logSources, templateRegistry, output);
+            } catch (Throwable e) {
+                abortOutput(output, e);
+                throw e;
+            }
+            output.finish();
+            writeEntityIndex();
+
+            if (outputType == EnumOutputType.Model) {
+                long start = System.nanoTime();
+                Path outputPath = SegmentedOutput.filePath(Paths.get(outputFilePath), gzipOutput);
+                try {
+                    if (outputPath.getParent() != null)
+                        Files.createDirectories(outputPath.getParent());
+                    try (OutputStream out = gzipOutput
+                            ? new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(outputPath)), 1 << 16)
+                            : new BufferedOutputStream(Files.newOutputStream(outputPath))) {
+                        RDFDataMgr.write(out, dataModel, outputFormat.modelFormat);
+                    }
+                } catch (Exception e) {
+                    LOG.error("Error writing ontology: " + e.toString());
+                }
+                metrics.stage(ParserMetrics.Stage.Serialization, start);
+            }
+        } finally {
+            if (store != null) {
+                saveStoreTemplates(store, dataModel);
+                store.close();
+                LOG.info("Saved the templates to " + storePath);
+            }
+            metrics.stopReporting();
+        }
+    }
+
+    /**
+     * Write the entity index collected while parsing, if it is enabled
+     *
+     * @throws IOException
+     */
+    private static void writeEntityIndex() throws IOException {
+        if (entityIndex == null)
+            return;
+        int entities = entityIndex.write();
+        LOG.info("Indexed the log lines of " + entities + " entities in " + entityIndex.segmentPath());
+    }
+
+    /**
+     * Replace the template graph of the TDB2 store by the templates of this run and their parameters. Other resources
+     * of the ontology, such as the log entries of the bundled parser.ttl, are not copied.
+     *
+     * @param store
+     * @param dataModel
+     */
+    static void saveStoreTemplates(DatasetGraph store, OntModel dataModel) {
+        TemplateTerms terms = templateTerms(dataModel);
+        Graph model = dataModel.getBaseModel().getGraph();
+        Txn.executeWrite(store, () -> {
+            Graph templates = store.getGraph(TEMPLATE_GRAPH);
+            templates.clear();
+            for (Triple templateType : model.find(Node.ANY, RDF.type.asNode(), terms.extractedTemplateClass.asNode()).toList()) {
+                Node template = templateType.getSubject();
+                GraphUtil.add(templates, model.find(template, Node.ANY, Node.ANY));
+                for (Triple hasParameter : model.find(template, terms.hasParameterProperty.asNode(), Node.ANY).toList())
+                    GraphUtil.add(templates, model.find(hasParameter.getObject(), Node.ANY, Node.ANY));
+            }
+        });
+    }
+
+    /**
+     * @return the entity patterns template parameters are classified with
+     */
+    static List<EntityPattern> defaultPatterns() {
         List<EntityPattern> patterns = new ArrayList<>();
 
         // check against parameters within parameter lists
-        patterns.add(new EntityPattern("URL", "connectedURL", true, Pattern.compile(regexURL), EnumPatternType.Parameter));
-        patterns.add(new EntityPattern("Host", "connectedHost", true, Pattern.compile(regexHost), EnumPatternType.Parameter));
-        patterns.add(new EntityPattern("Domain", "connectedDomain", true, Pattern.compile(regexDomain), EnumPatternType.Parameter));
+        patterns.add(new EntityPattern("URL", "connectedURL", true, Pattern.compile(regexURL), EnumPatternType.Parameter, "://"));
+        patterns.add(new EntityPattern("Host", "connectedHost", true, Pattern.compile(regexHost), EnumPatternType.Parameter, "#."));
+        patterns.add(new EntityPattern("Domain", "connectedDomain", true, Pattern.compile(regexDomain), EnumPatternType.Parameter, "."));
 
         // check against the entire log lines (context from parameter surroundings are needed)
-        patterns.add(new EntityPattern("User", "connectedUser", true, Pattern.compile(regexUser), EnumPatternType.LogLine));
-        patterns.add(new EntityPattern("Port", "port", false, Pattern.compile(regexPort), EnumPatternType.LogLine));
+        patterns.add(new EntityPattern("User", "connectedUser", true, Pattern.compile(regexUser), EnumPatternType.LogLine, "user", "usr", "uid"));
+        patterns.add(new EntityPattern("Port", "port", false, Pattern.compile(regexPort), EnumPatternType.LogLine, "port"));
+        return patterns;
+    }
 
-        Reader templateReader = new FileReader(Paths.get(logTemplate).toFile());
-        Reader dataReader = new FileReader(Paths.get(logData).toFile());
+    /**
+     * Override the defaults by --name=value args, e.g. --data=./input/openSSH/OpenSSH_2k_B.log_structured.csv
+     *
+     * @param args
+     */
+    private static void parseArgs(String[] args) {
+        for (String arg : args) {
+            String[] nameValue = arg.replaceFirst("^--", "").split("=", 2);
+            String value = nameValue.length > 1 ? nameValue[1] : "true";
+            switch (nameValue[0]) {
+                case "template":
+                    logTemplate = value;
+                    break;
+                case "data":
+                    logData = value;
+                    break;
+                case "raw":
+                    rawLog = value;
+                    break;
+                case "sources":
+                    sources = value;
+                    break;
+                case "parser":
+                    parserFilePath = value;
+                    break;
+                case "catalog":
+                    catalogFilePath = value;
+                    break;
+                case "output":
+                    outputFilePath = value;
+                    break;
+                case "outputType":
+                    outputType = EnumOutputType.valueOf(value);
+                    break;
+                case "format":
+                    outputFormat = EnumOutputFormat.valueOf(value);
+                    break;
+                case "gzip":
+                    gzipOutput = Boolean.parseBoolean(value);
+                    break;
+                case "segmentTriples":
+                    segmentTriples = Long.parseLong(value);
+                    break;
+                case "segmentBytes":
+                    segmentBytes = Long.parseLong(value);
+                    break;
+                case "shardBy":
+                    shardBy = EnumShardBucket.valueOf(value);
+                    break;
+                case "maxOpenShards":
+                    maxOpenShards = Integer.parseInt(value);
+                    break;
+                case "store":
+                    storePath = value;
+                    break;
+                case "storeBatchTriples":
+                    storeBatchTriples = Long.parseLong(value);
+                    break;
+                case "workers":
+                    workerThreads = Integer.parseInt(value);
+                    pipelineQueueCapacity = 4 * workerThreads;
+                    break;
+                case "readers":
+                    readersPerSource = Integer.parseInt(value);
+                    break;
+                case "entityIndex":
+                    entityIndexPath = value;
+                    break;
+                case "entityIndexBufferBytes":
+                    entityIndexBufferBytes = Long.parseLong(value);
+                    break;
+                case "follow":
+                    follow = Boolean.parseBoolean(value);
+                    break;
+                case "checkpoint":
+                    checkpointFilePath = value;
+                    break;
+                case "pollMillis":
+                    followPollMillis = Long.parseLong(value);
+                    break;
+                case "metricsInterval":
+                    metricsIntervalSeconds = Long.parseLong(value);
+                    break;
+                case "aggregateWindow":
+                    aggregateWindowSeconds = Long.parseLong(value);
+                    break;
+                case "aggregateOnly":
+                    aggregateOnly = Boolean.parseBoolean(value);
+                    break;
+                case "ner":
+                    nerEnabled = Boolean.parseBoolean(value);
+                    break;
+                case "nerModel":
+                    nerModel = value;
+                    break;
+                case "nerCacheSize":
+                    nerCacheSize = Integer.parseInt(value);
+                    break;
+                case "entityCacheSize":
+                    entityCacheSize = Integer.parseInt(value);
+                    entityCache = new EntityCache(entityCacheSize);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
 
-        Iterable<CSVRecord> templates = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(templateReader);
-        Iterable<CSVRecord> logLines = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(dataReader);
+        if (shardBy != null && outputType != EnumOutputType.Stream)
+            throw new IllegalArgumentException("Sharded output needs --outputType=Stream");
+        if (entityIndexPath != null && follow)
+            throw new IllegalArgumentException("The entity index is written at the end of a run, follow mode never ends");
 
-        List<LogLine> logLineList = new ArrayList<>();
-        logLines.forEach(logLine -> logLineList.add(LogLine.fromOpenSSH(logLine)));
+        // the default output name follows the format
+        if (outputFormat != EnumOutputFormat.Turtle && outputFilePath.endsWith(".ttl"))
+            outputFilePath = outputFilePath.substring(0, outputFilePath.length() - 4) + outputFormat.extension;
+    }
 
-        OntModel dataModel = ModelFactory.createOntologyModel(OntModelSpec.OWL_DL_MEM);
-        InputStream is = Main.class.getClassLoader().getResourceAsStream(parserFilePath.substring(parserFilePath.lastIndexOf("/") + 1));
-        RDFDataMgr.read(dataModel, is, Lang.TURTLE);
+    /**
+     * Follow mode: process the records appended to logData as they arrive and append their triples to the output.
+     * Templates that are not known yet are annotated on the fly from the EventTemplate column of their first line.
+     *
+     * @param patterns
+     * @param dataModel
+     * @param templateRegistry
+     * @param catalog
+     * @throws IOException
+     */
+    private static void followLogData(PatternSet patterns, OntModel dataModel, TemplateRegistry templateRegistry,
+                                      TemplateCatalog catalog) throws IOException {
+        if (outputType != EnumOutputType.Stream)
+            throw new IllegalStateException("Follow mode needs the " + EnumOutputType.Stream + " output type");
+        if (segmentTriples > 0 || segmentBytes > 0)
+            throw new IllegalStateException("Follow mode appends to a single output file, it cannot be segmented");
+        if (sources != null)
+            throw new IllegalStateException("Follow mode watches logData, use a directory instead of sources");
+        if (aggregateWindowSeconds > 0)
+            throw new IllegalStateException("Follow mode cannot aggregate, the lines of open windows are checkpointed before their summaries are written");
+
+        LogFollower follower = new LogFollower(Paths.get(logData), Paths.get(checkpointFilePath),
+                SegmentedOutput.filePath(Paths.get(outputFilePath), gzipOutput), followPollMillis, followChunkBytes);
+
+        follower.run((file, records) -> {
+            String source = LogSource.name(file);
+            for (CSVRecord record : records) {
+                if (templateRegistry.getHash(source, record.get(7)) == null)
+                    annotateOnTheFly(patterns, source, LogLine.fromOpenSSH(record), dataModel, templateRegistry, catalog);
+            }
 
-        List<Template> templatesList = new ArrayList<>();
+            StreamRDF output = openOutput(dataModel, true);
+            output.start();
+            try {
+                parseLogLines(records, source, templateRegistry, null, workerThreads, output);
+            } finally {
+                output.finish();
+            }
+        });
+    }
 
-        // load existing templates
-        loadExistingTemplates(dataModel, templatesList);
+    /**
+     * Raw log mode: mine the templates of the raw syslog lines on the fly (see TemplateMiner) and parse the lines
+     * in the same streaming pass, no structured CSVs are needed.
+     * <p>
+     * The template of a cluster is generalized while it is mined, under the same EventId. Each version is annotated
+     * when it shows up and replaces the former one for the EventId, but only the final version of each cluster is
+     * stored in the ontology and the catalog, at the end of the run.
+     *
+     * @param patterns
+     * @param dataModel
+     * @param templateRegistry
+     * @param catalog
+     * @throws IOException
+     */
+    private static void parseRawLog(PatternSet patterns, OntModel dataModel, TemplateRegistry templateRegistry,
+                                    TemplateCatalog catalog) throws IOException {
+        TemplateMiner miner = new TemplateMiner();
+        String source = LogSource.name(Paths.get(rawLog));
+        Set<String> storedHashes = new HashSet<>();
+        for (Template template : templateRegistry.templates())
+            storedHashes.add(template.hash);
+        Set<String> minedEventIds = new LinkedHashSet<>();
+
+        StreamRDF output = openOutput(dataModel, false);
+        output.start();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(rawLog), StandardCharsets.UTF_8)) {
+            // templates are mined and annotated on the reader side, before their lines are handed to the workers
+            Iterable<LogLine> logLines = reader.lines()
+                    .map(miner::mine)
+                    .filter(Objects::nonNull)
+                    .peek(logLine -> {
+                        Template current = templateRegistry.getByEventId(source, logLine.EventId);
+                        if (current == null || !current.TemplateContent.equals(logLine.EventTemplate)) {
+                            try {
+                                annotateOnTheFly(patterns, source, logLine, null, templateRegistry, null);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                            minedEventIds.add(logLine.EventId);
+                        }
+                    })::iterator;
+            WindowAggregator aggregator = newAggregator(source);
+            parseLogLines(logLines, batch -> LogLineBatch.fromLogLines(batch, source, dictionaries), templateRegistry,
+                    aggregator, workerThreads, output);
+            if (aggregator != null)
+                aggregator.flush(output);
+        } catch (Throwable e) {
+            abortOutput(output, e);
+            throw e;
+        }
+        output.finish();
+
+        List<Template> newTemplates = new ArrayList<>();
+        for (String eventId : minedEventIds) {
+            Template template = templateRegistry.getByEventId(source, eventId);
+            if (storedHashes.add(template.hash)) {
+                createTemplateInstance(template, dataModel);
+                newTemplates.add(template);
+            }
+        }
+        if (catalog != null)
+            catalog.append(newTemplates);
+        LOG.info("Mined " + miner.size() + " templates from " + rawLog + ", " + newTemplates.size() + " of them new");
+    }
 
-        // get all templates plus occurrences of patterns plus properties
+    /**
+     * Annotate the template of a log line whose EventId is not known yet, from the line itself
+     *
+     * @param patterns
+     * @param source
+     * @param logLine
+     * @param dataModel
+     * @param templateRegistry
+     * @param catalog
+     * @throws IOException
+     */
+    private static void annotateOnTheFly(PatternSet patterns, String source, LogLine logLine, OntModel dataModel,
+                                         TemplateRegistry templateRegistry, TemplateCatalog catalog) throws IOException {
+        Template template = new Template(logLine.EventId, logLine.EventTemplate);
         try {
-            annotateTemplates(patterns, templates, logLineList, dataModel, templatesList);
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-        } catch (CloneNotSupportedException e) {
-            e.printStackTrace();
+            template.hash = hashTemplate(template.TemplateContent);
+            if (templateRegistry.contains(template.hash))
+                templateRegistry.mapEventId(source, template.TemplateId, template.hash);
+            else
+                annotateTemplate(patterns, source, template, logLine, dataModel, templateRegistry, catalog);
+        } catch (NoSuchAlgorithmException | CloneNotSupportedException e) {
+            throw new IOException("Error annotating template " + logLine.EventId, e);
+        }
+    }
+
+    /**
+     * Open the sink the log KG triples are emitted to, depending on the output type
+     *
+     * @param dataModel
+     * @param append append to an existing output file instead of replacing it
+     * @return StreamRDF
+     * @throws IOException
+     */
+    private static StreamRDF openOutput(OntModel dataModel, boolean append) throws IOException {
+        StreamRDF output;
+        if (outputType == EnumOutputType.Model) {
+            output = StreamRDFLib.graph(dataModel.getGraph());
+        } else if (outputType == EnumOutputType.TDB2) {
+            output = new TDB2Output(store, storeBatchTriples);
+        } else if (shardBy != null) {
+            if (append)
+                throw new IllegalArgumentException("Sharded output cannot be appended to");
+            output = new ShardedOutput(Paths.get(outputFilePath), outputFormat, gzipOutput, segmentTriples, segmentBytes,
+                    shardBy, workerThreads, maxOpenShards);
+        } else {
+            output = new SegmentedOutput(Paths.get(outputFilePath), outputFormat, gzipOutput, segmentTriples, segmentBytes, append);
         }
 
-        parseLogLines(logLineList, templatesList, dataModel);
+        for (String[] prefix : Vocabulary.prefixes())
+            output.prefix(prefix[0], prefix[1]);
+        return output;
     }
 
-    private static void loadExistingTemplates(OntModel dataModel, List<Template> templatesList) {
-        OntClass extractedTemplateClass = dataModel.createClass(NS_PARSER + "ExtractedTemplate");
-        OntClass extractedParamterClass = dataModel.createClass(NS_PARSER + "ExtractedParameter");
+    /**
+     * End the output after an error: the TDB2 store rolls back its open transaction, the files keep what was written
+     *
+     * @param output
+     * @param error
+     */
+    private static void abortOutput(StreamRDF output, Throwable error) {
+        if (output instanceof TDB2Output)
+            ((TDB2Output) output).abort(error);
+        else
+            output.finish();
+    }
 
-        DatatypeProperty contentProperty = dataModel.createDatatypeProperty(NS_PARSER + "content");
-        DatatypeProperty hashProperty = dataModel.createDatatypeProperty(NS_PARSER + "hash");
-        ObjectProperty hasParameterProperty = dataModel.createObjectProperty(NS_PARSER + "hasParameter");
-        AnnotationProperty subjectProperty = dataModel.getAnnotationProperty("http://purl.org/dc/elements/1.1/subject");
+    /**
+     * Declare the classes and properties used by the log KG once in the ontology
+     *
+     * @param dataModel
+     * @param patterns
+     */
+    private static void declareVocabulary(OntModel dataModel, List<EntityPattern> patterns) {
+        dataModel.createClass(NS_CORE + "LogEntry");
+        dataModel.createClass(NS_PARSER + "Source");
+        dataModel.createDatatypeProperty(NS_CORE + "logMessage");
+        dataModel.createDatatypeProperty(NS_CORE + "timestamp");
+        dataModel.createDatatypeProperty(NS_CORE + "level");
+        dataModel.createObjectProperty(NS_PARSER + "hasSource");
+        dataModel.createDatatypeProperty(NS_PARSER + "sequence");
+        dataModel.createDatatypeProperty(NS_PARSER + "templateId");
+        if (aggregateWindowSeconds > 0) {
+            dataModel.createClass(NS_PARSER + "LogSummary");
+            dataModel.createDatatypeProperty(NS_PARSER + "count");
+            dataModel.createDatatypeProperty(NS_PARSER + "firstTimestamp");
+            dataModel.createDatatypeProperty(NS_PARSER + "lastTimestamp");
+            dataModel.createDatatypeProperty(NS_PARSER + "sampleLineId");
+        }
 
-        DatatypeProperty classNameProperty = dataModel.createDatatypeProperty(NS_PARSER + "className");
-        DatatypeProperty propertyNameProperty = dataModel.createDatatypeProperty(NS_PARSER + "propertyName");
-        DatatypeProperty patternProperty = dataModel.createDatatypeProperty(NS_PARSER + "pattern");
-        DatatypeProperty isObjectProperty = dataModel.createDatatypeProperty(NS_PARSER + "isObject");
-        DatatypeProperty positionProperty = dataModel.createDatatypeProperty(NS_PARSER + "position");
-        DatatypeProperty typeProperty = dataModel.createDatatypeProperty(NS_PARSER + "type");
+        List<EntityPattern> entityPatterns = new ArrayList<>(patterns);
+        if (ner != null)
+            entityPatterns.addAll(NerClassifier.patterns());
 
-        ExtendedIterator templateIndividuals = extractedTemplateClass.listInstances();
+        for (EntityPattern pattern : entityPatterns) {
+            if (pattern.isObject) {
+                dataModel.createClass(NS_CORE + pattern.className);
+                dataModel.createObjectProperty(NS_PARSER + pattern.propertyName);
+            } else {
+                dataModel.createDatatypeProperty(NS_PARSER + pattern.propertyName);
+            }
+        }
+    }
+
+    /**
+     * Open structured log data as a CSV parser that is read record by record
+     *
+     * @param data
+     * @return CSVParser
+     * @throws IOException
+     */
+    private static CSVParser openLogData(Path data) throws IOException {
+        Reader dataReader = Files.newBufferedReader(data, StandardCharsets.UTF_8);
+        return CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(dataReader);
+    }
+
+    /**
+     * Cheap first pass over the log data: keep only the first log line of each requested EventId.
+     * The pass stops as soon as an example for every EventId has been found.
+     *
+     * @param data
+     * @param eventIds
+     * @return map from EventId to its example log line
+     * @throws IOException
+     */
+    private static Map<String, LogLine> findTemplateExamples(Path data, Set<String> eventIds) throws IOException {
+        Map<String, LogLine> examples = new HashMap<>();
+        if (eventIds.isEmpty())
+            return examples;
+
+        try (CSVParser logLines = openLogData(data)) {
+            for (CSVRecord record : logLines) {
+                String eventId = record.get(7);
+                if (eventIds.contains(eventId) && !examples.containsKey(eventId)) {
+                    examples.put(eventId, LogLine.fromOpenSSH(record));
+                    if (examples.size() == eventIds.size())
+                        break;
+                }
+            }
+        }
+        return examples;
+    }
+
+    /**
+     * Classes and properties of the template ontology, resolved once per model
+     */
+    private static class TemplateTerms {
+        final OntModel model;
+        final OntClass extractedTemplateClass;
+        final OntClass extractedParamterClass;
+
+        final DatatypeProperty contentProperty;
+        final DatatypeProperty hashProperty;
+        final ObjectProperty hasParameterProperty;
+        final AnnotationProperty subjectProperty;
+
+        final DatatypeProperty classNameProperty;
+        final DatatypeProperty propertyNameProperty;
+        final DatatypeProperty patternProperty;
+        final DatatypeProperty isObjectProperty;
+        final DatatypeProperty positionProperty;
+        final DatatypeProperty typeProperty;
+
+        TemplateTerms(OntModel dataModel) {
+            model = dataModel;
+            extractedTemplateClass = dataModel.createClass(NS_PARSER + "ExtractedTemplate");
+            extractedParamterClass = dataModel.createClass(NS_PARSER + "ExtractedParameter");
+
+            contentProperty = dataModel.createDatatypeProperty(NS_PARSER + "content");
+            hashProperty = dataModel.createDatatypeProperty(NS_PARSER + "hash");
+            hasParameterProperty = dataModel.createObjectProperty(NS_PARSER + "hasParameter");
+            subjectProperty = dataModel.createAnnotationProperty("http://purl.org/dc/elements/1.1/subject");
+
+            classNameProperty = dataModel.createDatatypeProperty(NS_PARSER + "className");
+            propertyNameProperty = dataModel.createDatatypeProperty(NS_PARSER + "propertyName");
+            patternProperty = dataModel.createDatatypeProperty(NS_PARSER + "pattern");
+            isObjectProperty = dataModel.createDatatypeProperty(NS_PARSER + "isObject");
+            positionProperty = dataModel.createDatatypeProperty(NS_PARSER + "position");
+            typeProperty = dataModel.createDatatypeProperty(NS_PARSER + "type");
+        }
+    }
+
+    private static TemplateTerms templateTerms;
+
+    private static TemplateTerms templateTerms(OntModel dataModel) {
+        if (templateTerms == null || templateTerms.model != dataModel)
+            templateTerms = new TemplateTerms(dataModel);
+        return templateTerms;
+    }
+
+    private static void loadExistingTemplates(OntModel dataModel, TemplateRegistry templateRegistry) {
+        TemplateTerms terms = templateTerms(dataModel);
+        DatatypeProperty contentProperty = terms.contentProperty;
+        DatatypeProperty hashProperty = terms.hashProperty;
+        ObjectProperty hasParameterProperty = terms.hasParameterProperty;
+        AnnotationProperty subjectProperty = terms.subjectProperty;
+
+        DatatypeProperty classNameProperty = terms.classNameProperty;
+        DatatypeProperty propertyNameProperty = terms.propertyNameProperty;
+        DatatypeProperty patternProperty = terms.patternProperty;
+        DatatypeProperty isObjectProperty = terms.isObjectProperty;
+        DatatypeProperty positionProperty = terms.positionProperty;
+        DatatypeProperty typeProperty = terms.typeProperty;
+
+        ExtendedIterator templateIndividuals = terms.extractedTemplateClass.listInstances();
         while (templateIndividuals.hasNext()) {
             Individual templateIndividual = (Individual) templateIndividuals.next();
-            Template template = new Template(null, templateIndividual.getProperty(contentProperty).toString());
+            Template template = new Template(null, templateIndividual.getProperty(contentProperty).getString());
             template.hash = templateIndividual.getProperty(hashProperty).getString();
 
             Statement subj = templateIndividual.getProperty(subjectProperty);
             if (subj != null)
                 template.subject = subj.getString();
 
-            templatesList.add(template);
-
             StmtIterator hasChildStatementIterator = templateIndividual.listProperties(hasParameterProperty);
             while (hasChildStatementIterator.hasNext()) {
                 Statement hasChildStatement = hasChildStatementIterator.next();
@@ -170,93 +764,258 @@ public class Main {
 
                 template.parameterDict.add(parameter);
             }
+
+            templateRegistry.add(template);
+        }
+    }
+
+    /**
+     * Task run for each log source, see forEachSource
+     */
+    private interface SourceTask {
+        void run(LogSource source) throws Exception;
+    }
+
+    /**
+     * Run a task for every source, up to parallelSources of them at the same time
+     *
+     * @param logSources
+     * @param parallelSources
+     * @param task
+     * @throws IOException
+     */
+    private static void forEachSource(List<LogSource> logSources, int parallelSources, SourceTask task) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelSources);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (LogSource source : logSources) {
+                tasks.add(executor.submit(() -> {
+                    task.run(source);
+                    return null;
+                }));
+            }
+            awaitSources(tasks);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void awaitSources(List<Future<?>> tasks) throws IOException {
+        try {
+            for (Future<?> task : tasks)
+                task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing the sources", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException("Error parsing the sources", e.getCause());
+        }
+    }
+
+    /**
+     * Annotate the templates of a source, see annotateTemplates
+     *
+     * @param patterns
+     * @param source
+     * @param dataModel
+     * @param templateRegistry
+     * @param catalog
+     * @throws IOException
+     */
+    private static void annotateSource(PatternSet patterns, LogSource source, OntModel dataModel,
+                                       TemplateRegistry templateRegistry, TemplateCatalog catalog) throws IOException {
+        try (Reader templateReader = Files.newBufferedReader(source.templates, StandardCharsets.UTF_8)) {
+            Iterable<CSVRecord> templates = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(templateReader);
+            annotateTemplates(patterns, source, templates, dataModel, templateRegistry, catalog);
+        } catch (NoSuchAlgorithmException e) {
+            e.printStackTrace();
+        } catch (CloneNotSupportedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Parse the log lines of all sources into the output. Several sources, or chunks of sources (--readers), are
+     * parsed at the same time and share the workers, their triples go through a single writer (see SharedOutput).
+     *
+     * @param logSources
+     * @param templateRegistry
+     * @param output
+     * @throws IOException
+     */
+    private static void parseSources(List<LogSource> logSources, TemplateRegistry templateRegistry, StreamRDF output) throws IOException {
+        // chunks of the sources, a null range is the whole source
+        List<LogSource> chunkSources = new ArrayList<>();
+        List<long[]> chunkRanges = new ArrayList<>();
+        for (LogSource source : logSources) {
+            if (readersPerSource <= 1 || aggregateWindowSeconds > 0) {
+                // the windows of a source are closed by the order of its lines, chunks would close them early
+                if (readersPerSource > 1)
+                    LOG.info("Aggregating, source " + source.name + " is read by a single reader");
+                chunkSources.add(source);
+                chunkRanges.add(null);
+                continue;
+            }
+            try (MappedCsvReader reader = new MappedCsvReader(source.data)) {
+                for (long[] range : reader.split(readersPerSource)) {
+                    chunkSources.add(source);
+                    chunkRanges.add(range);
+                }
+            }
+        }
+
+        int parallelChunks = Math.min(chunkSources.size(), Math.max(1, workerThreads));
+        if (parallelChunks <= 1) {
+            for (int i = 0; i < chunkSources.size(); i++)
+                parseSource(chunkSources.get(i), chunkRanges.get(i), templateRegistry, workerThreads, output);
+            return;
+        }
+
+        int workers = Math.max(1, workerThreads / parallelChunks);
+        SharedOutput sharedOutput = new SharedOutput(output, SHARED_OUTPUT_BATCH_TRIPLES, pipelineQueueCapacity);
+        ExecutorService executor = Executors.newFixedThreadPool(parallelChunks);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int i = 0; i < chunkSources.size(); i++) {
+                LogSource source = chunkSources.get(i);
+                long[] range = chunkRanges.get(i);
+                StreamRDF sourceOutput = sharedOutput.newSource();
+                tasks.add(executor.submit(() -> {
+                    try {
+                        parseSource(source, range, templateRegistry, workers, sourceOutput);
+                    } finally {
+                        sourceOutput.finish();
+                    }
+                    LOG.info("Parsed source " + source.name + (range == null ? "" : " bytes " + range[0] + "-" + range[1]));
+                    return null;
+                }));
+            }
+
+            sharedOutput.drain();
+            awaitSources(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing the sources", e);
+        } finally {
+            executor.shutdownNow();
         }
     }
 
     /**
      * (1) first, look into logline that contain certain patterns by EventId = TemplateId
      * (2) for each template, iterate the parameters and check which patterns are connected to the parameter.
+     * <p>
+     * Example log lines are only looked up for templates that are not known yet (see findTemplateExamples).
      *
      * @param patterns
+     * @param source
      * @param csvTemplates
-     * @param logLineList
-     * @param templatesList
+     * @param dataModel
+     * @param templateRegistry
+     * @param catalog
      * @return
      */
-    private static void annotateTemplates(List<EntityPattern> patterns, Iterable<CSVRecord> csvTemplates,
-                                          List<LogLine> logLineList, OntModel dataModel, List<Template> templatesList) throws NoSuchAlgorithmException, CloneNotSupportedException {
+    private static void annotateTemplates(PatternSet patterns, LogSource source, Iterable<CSVRecord> csvTemplates,
+                                          OntModel dataModel, TemplateRegistry templateRegistry, TemplateCatalog catalog) throws NoSuchAlgorithmException, CloneNotSupportedException, IOException {
 
-        boolean change = false;
+        List<Template> newTemplates = new ArrayList<>();
 
         // Annotate template parameters
         for (CSVRecord csvTemplate : csvTemplates) {
             Template template = new Template(csvTemplate.get(0), csvTemplate.get(1));
 
-            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            final byte[] hashbytes = digest.digest(template.TemplateContent.getBytes(StandardCharsets.UTF_8));
-            String hash = new String(hashbytes);
+            template.hash = hashTemplate(template.TemplateContent);
 
-            template.hash = hash;
-
-            boolean exists = false;
-            for (Template existingTemplate : templatesList) {
-                if (existingTemplate.hash.equals(template.hash)) {
-                    exists = true;
-
-                    // Store mappings from templateId to Hash for this run
-                    templateIdMappings.put(template.TemplateId, existingTemplate.hash);
-                    break;
-                }
+            if (templateRegistry.contains(template.hash)) {
+                // Store mappings from templateId to Hash for this run
+                templateRegistry.mapEventId(source.name, template.TemplateId, template.hash);
+                continue;
             }
 
-            if (exists)
-                continue;
+            newTemplates.add(template);
+        }
 
-            change = true;
+        // look into logLine that contain certain patterns by EventId=TemplateId
+        Set<String> newTemplateIds = new HashSet<>();
+        newTemplates.forEach(template -> newTemplateIds.add(template.TemplateId));
+        Map<String, LogLine> examples = findTemplateExamples(source.data, newTemplateIds);
 
-            for (LogLine logline : logLineList) {
-                // look into logLine that contain certain patterns by EventId=TemplateId
-                if (logline.EventId.equals(template.TemplateId)) {
-                    LOG.info("Found template example: " + logline.EventId + ":" + logline.Content);
+        for (Template template : newTemplates) {
+            if (templateRegistry.contains(template.hash)) {
+                // the same template content was listed twice under different ids, or annotated by another source
+                templateRegistry.mapEventId(source.name, template.TemplateId, template.hash);
+                continue;
+            }
 
-                    processTemplateParameters(patterns, template, logline);
+            LogLine logline = examples.get(template.TemplateId);
+            if (logline == null)
+                continue; // template without any log line in this run
 
-                    // Store templates in ontology if the template does not exist yet
-                    createTemplateInstance(template, dataModel); // add it to the ontology for later
-                    templatesList.add(template); // add it to the in memory list for this run
-                    templateIdMappings.put(template.TemplateId, template.hash);
+            annotateTemplate(patterns, source.name, template, logline, dataModel, templateRegistry, catalog);
+        }
+    }
 
-                    break; // after finding the first template patterns, don't need to go further
-                }
+    /**
+     * Annotate a new template from its example log line and store it in the ontology, catalog and registry.
+     * Sources annotate one template at a time, a template another source has annotated in the meantime is only mapped.
+     *
+     * @param patterns
+     * @param source
+     * @param template
+     * @param logline
+     * @param dataModel        null to only add the template to the registry
+     * @param templateRegistry
+     * @param catalog          null to only add the template to the registry
+     */
+    private static void annotateTemplate(PatternSet patterns, String source, Template template, LogLine logline,
+                                         OntModel dataModel, TemplateRegistry templateRegistry, TemplateCatalog catalog) throws CloneNotSupportedException, IOException {
+        synchronized (annotationLock) {
+            if (!templateRegistry.contains(template.hash)) {
+                LOG.info("Found template example: " + logline.EventId + ":" + logline.Content);
+                long start = System.nanoTime();
+
+                processTemplateParameters(patterns, template, logline);
+
+                // Store templates in ontology if the template does not exist yet
+                if (dataModel != null)
+                    createTemplateInstance(template, dataModel); // add it to the ontology of the model output (and the store)
+                if (catalog != null)
+                    catalog.append(template); // add it to the catalog for later
+                templateRegistry.add(template); // add it to the in memory registry for this run
+                metrics.stage(ParserMetrics.Stage.TemplateAnnotation, start);
             }
         }
+        templateRegistry.mapEventId(source, template.TemplateId, template.hash);
+    }
 
-        // Save templates to ontology
-//        if (change) {
-//            try {
-//                FileWriter out = new FileWriter(parserFilePath);// + DateTime.now().getMillis());
-//                dataModel.write(out, "Turtle");
-//            } catch (Exception e) {
-//                LOG.error("Error writing ontology: " + e.toString());
-//            }
-//        }
+    /**
+     * @param templateContent
+     * @return the hash identifying a template content across runs
+     */
+    static String hashTemplate(String templateContent) throws NoSuchAlgorithmException {
+        final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        final byte[] hashbytes = digest.digest(templateContent.getBytes(StandardCharsets.UTF_8));
+        return new String(hashbytes);
     }
 
     private static void createTemplateInstance(Template template, OntModel dataModel) {
-        OntClass extractedTemplateClass = dataModel.createClass(NS_PARSER + "ExtractedTemplate");
-        OntClass extractedParamterClass = dataModel.createClass(NS_PARSER + "ExtractedParameter");
-
-        DatatypeProperty contentProperty = dataModel.createDatatypeProperty(NS_PARSER + "content");
-        DatatypeProperty hashProperty = dataModel.createDatatypeProperty(NS_PARSER + "hash");
-        ObjectProperty hasParameterProperty = dataModel.createObjectProperty(NS_PARSER + "hasParameter");
-        DatatypeProperty positionProperty = dataModel.createDatatypeProperty(NS_PARSER + "position");
-
-        DatatypeProperty classNameProperty = dataModel.createDatatypeProperty(NS_PARSER + "className");
-        DatatypeProperty propertyNameProperty = dataModel.createDatatypeProperty(NS_PARSER + "propertyName");
-        //DatatypeProperty patternProperty = dataModel.createDatatypeProperty(NS_PARSER + "pattern");
-        DatatypeProperty isObjectProperty = dataModel.createDatatypeProperty(NS_PARSER + "isObject");
-        //DatatypeProperty typeProperty = dataModel.createDatatypeProperty(NS_PARSER + "type");
-        AnnotationProperty subjectProperty = dataModel.getAnnotationProperty("http://purl.org/dc/elements/1.1/subject");
+        TemplateTerms terms = templateTerms(dataModel);
+        OntClass extractedTemplateClass = terms.extractedTemplateClass;
+        OntClass extractedParamterClass = terms.extractedParamterClass;
+
+        DatatypeProperty contentProperty = terms.contentProperty;
+        DatatypeProperty hashProperty = terms.hashProperty;
+        ObjectProperty hasParameterProperty = terms.hasParameterProperty;
+        DatatypeProperty positionProperty = terms.positionProperty;
+
+        DatatypeProperty classNameProperty = terms.classNameProperty;
+        DatatypeProperty propertyNameProperty = terms.propertyNameProperty;
+        //DatatypeProperty patternProperty = terms.patternProperty;
+        DatatypeProperty isObjectProperty = terms.isObjectProperty;
+        //DatatypeProperty typeProperty = terms.typeProperty;
+        AnnotationProperty subjectProperty = terms.subjectProperty;
 
         Individual templateIndividual = extractedTemplateClass.createIndividual(NS_INSTANCE + "Template_" + UUID.randomUUID());
         templateIndividual.addProperty(subjectProperty, "TestSubject");
@@ -268,7 +1027,6 @@ public class Main {
             Individual paramIndividual = extractedParamterClass.createIndividual(NS_INSTANCE + "Parameter_" + UUID.randomUUID());
             paramIndividual.addProperty(positionProperty, String.valueOf(pos));
             templateIndividual.addProperty(hasParameterProperty, paramIndividual);
-            param.position = pos;
             pos++;
 
             if (param == null || param.type == null) // just a placeholder parameter for the position
@@ -283,49 +1041,39 @@ public class Main {
     }
 
     /**
-     * Check which regex patterns are related to template parameters and record it in the Template class instance
+     * Check which regex patterns are related to template parameters and record it in the Template class instance.
+     * Parameters without a match are classified by the NER model if it is enabled.
      *
      * @param patterns
      * @param template
      * @param logLine
      */
-    private static void processTemplateParameters(List<EntityPattern> patterns, Template template, LogLine logLine) throws CloneNotSupportedException {
-        // take the parameter values and clean it up.
-        String paramValues = logLine.ParameterList.substring(1, logLine.ParameterList.length() - 1);
-        paramValues = paramValues.replaceAll("'", "");
+    static void processTemplateParameters(PatternSet patterns, Template template, LogLine logLine) throws CloneNotSupportedException {
+        // take the parameter values, without a ParameterList column they are sliced out of the content by the template
+        ParameterList parameters = null;
+        if (logLine.ParameterList.isEmpty()) {
+            TemplateExtractor extractor = TemplateExtractor.compile(template.TemplateContent);
+            parameters = extractor == null ? null : extractor.extract(logLine.Content);
+        }
+        if (parameters == null)
+            parameters = ParameterList.parse(logLine.ParameterList);
 
         // if not empty, continue
-        if (!paramValues.isEmpty()) {
-            String[] paramValuesArray = paramValues.split(",");
-            for (String value : paramValuesArray) {
+        if (!parameters.isEmpty()) {
+            String[] paramValuesArray = parameters.values();
+            EntityPattern[] matches = patterns.classify(logLine.Content, paramValuesArray);
+            EntityPattern[] entities = ner == null ? null : ner.classify(logLine.Content, paramValuesArray, matches);
+            for (int i = 0; i < paramValuesArray.length; i++) {
+                String value = paramValuesArray[i];
                 EntityPattern foundPattern = null;
-                // depending on type of pattern, process it differently
-                for (EntityPattern pattern : patterns) {
-                    if (pattern.type == EnumPatternType.Parameter) {
-                        // the pattern match property values exactly
-                        Matcher matcher = pattern.pattern.matcher(value);
-                        if (matcher.find()) {
-                            LOG.info("Found Parameter Regex: " + value + " of " + pattern.className);
-                            foundPattern = (EntityPattern) pattern.clone();
-                            break;
-                        }
-                    } else if (pattern.type == EnumPatternType.LogLine) {
-                        // the pattern requires "context" information from its surrounding
-                        Matcher matcher = pattern.pattern.matcher(logLine.Content);
-                        if (matcher.find()) {
-                            String tempValue = matcher.group(0);
-                            if (tempValue.contains(value)) {
-                                LOG.info("Found Content Regex: " + value + " of " + pattern.className);
-                                foundPattern = (EntityPattern) pattern.clone();
-                                break;
-                            }
-                        }
-                    }
-//                    else {
-//                        // pattern type is not recognized
-//                        LOG.error("Found unrecognized pattern type: " + pattern.type);
-//                        template.parameterDict.add(null);
-//                    }
+                if (matches[i] != null) {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Found {} Regex: {} of {}", matches[i].type, value, matches[i].className);
+                    foundPattern = (EntityPattern) matches[i].clone();
+                } else if (entities != null && entities[i] != null) {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Found {} NER: {} of {}", entities[i].type, value, entities[i].className);
+                    foundPattern = entities[i];
                 }
 
                 if (foundPattern == null) {
@@ -333,6 +1081,7 @@ public class Main {
                     LOG.warn("Value '" + value + "' doesn't match any patterns");
                     foundPattern = new EntityPattern();
                 }
+                foundPattern.position = i;
                 template.parameterDict.add(foundPattern);
             }
         }
@@ -343,145 +1092,236 @@ public class Main {
      * <p>
      * (2) based on the template parameters, add additional information on URL, HOST, USER, DOMAIN, and PORT
      *
-     * @param logLines
-     * @param templatesList
-     * @param dataModel
+     * @param logLines log line records, consumed one at a time
+     * @param source   name of the log source
+     * @param templateRegistry
+     * @param aggregator summarizes the lines per time window, null for none
+     * @param workers
+     * @param output
      */
-    private static void parseLogLines(List<LogLine> logLines, List<Template> templatesList, OntModel dataModel) {
+    private static void parseLogLines(Iterable<CSVRecord> logLines, String source, TemplateRegistry templateRegistry,
+                                      WindowAggregator aggregator, int workers, StreamRDF output) {
+        parseLogLines(logLines, batch -> LogLineBatch.fromOpenSSH(batch, source, dictionaries), templateRegistry,
+                aggregator, workers, output);
+    }
 
-        // Find entities in each line
-        for (LogLine logline : logLines) {
-            LOG.info("Process logline-" + logline.LineId);
+    /**
+     * @param logLines log line records of any kind, consumed one at a time
+     * @param decoder  turns a batch of records into a LogLineBatch
+     * @param templateRegistry
+     * @param aggregator summarizes the lines per time window, null for none; the caller flushes it
+     * @param workers
+     * @param output
+     */
+    private static <T> void parseLogLines(Iterable<T> logLines, Function<List<T>, LogLineBatch> decoder,
+                                          TemplateRegistry templateRegistry, WindowAggregator aggregator, int workers,
+                                          StreamRDF output) {
+        // Find entities in each line, on workers threads
+        ParsePipeline pipeline = new ParsePipeline(workers, pipelineBatchSize, pipelineQueueCapacity, metrics);
+        pipeline.run(logLines, decoder,
+                (batch, row, lineOutput) -> parseLogLine(batch, row, templateRegistry, aggregator, lineOutput),
+                aggregator == null ? output : aggregator.output(output));
+    }
 
-            // create individual for each log line
-            Individual lineInstance = getLineInstance(dataModel, logline);
+    /**
+     * @param source
+     * @return aggregator of the lines of a source, or null if lines are not aggregated
+     */
+    private static WindowAggregator newAggregator(String source) {
+        return aggregateWindowSeconds > 0 ? new WindowAggregator(source, aggregateWindowSeconds, aggregateOnly, shardBy != null) : null;
+    }
 
-            // get clean parameters
-            String paramValues = logline.ParameterList.substring(1, logline.ParameterList.length() - 1);
-            paramValues = paramValues.replaceAll("'", "");
+    /**
+     * Parse the log lines of a structured source, including the summaries of the lines if they are aggregated.
+     * The records are read through the memory-mapped reader and decoded on the workers.
+     *
+     * @param source
+     * @param range            line-aligned byte range of the source, see MappedCsvReader.split; null for all of it
+     * @param templateRegistry
+     * @param workers
+     * @param output
+     * @throws IOException
+     */
+    private static void parseSource(LogSource source, long[] range, TemplateRegistry templateRegistry, int workers,
+                                    StreamRDF output) throws IOException {
+        WindowAggregator aggregator = newAggregator(source.name);
+        try (MappedCsvReader reader = new MappedCsvReader(source.data)) {
+            parseLogLines(range == null ? reader.rows() : reader.rows(range[0], range[1]),
+                    batch -> LogLineBatch.fromCsvRows(batch, source.name, dictionaries), templateRegistry, aggregator,
+                    workers, output);
+        }
+        if (aggregator != null)
+            aggregator.flush(output);
+    }
 
-            // process parameter values
-            if (paramValues.isEmpty())
-                continue; // if empty, skip this log line
+    /**
+     * Produce the LogEntry of a single log line plus its entities, see parseLogLines
+     *
+     * @param batch
+     * @param row row of the log line in the batch
+     * @param templateRegistry
+     * @param output
+     */
+    static void parseLogLine(LogLineBatch batch, int row, TemplateRegistry templateRegistry, StreamRDF output) {
+        parseLogLine(batch, row, templateRegistry, null, output);
+    }
 
-            String[] parameterValues = paramValues.split(",");
-            for (Template template : templatesList) {
-                String loglineTemplateHash = templateIdMappings.get(logline.EventId); // Get hash from mapping
-                if (template.hash.equals(loglineTemplateHash)) {
-                    for (int counter = 0; counter < parameterValues.length; counter++) {
-                        String parameter = parameterValues[counter].trim();
+    /**
+     * @param batch
+     * @param row row of the log line in the batch
+     * @param templateRegistry
+     * @param aggregator summarizes the line, null to only emit the LogEntry
+     * @param output
+     */
+    static void parseLogLine(LogLineBatch batch, int row, TemplateRegistry templateRegistry, WindowAggregator aggregator,
+                             StreamRDF output) {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Process logline-{}", batch.lineId(row));
+        String shard = null; // entity types and labels are emitted once per shard
+        if (shardBy != null) {
+            ShardedOutput.Marker marker = shardMarker(batch, row);
+            output.triple(marker);
+            shard = marker.shard(shardBy);
+        }
 
-                        EntityPattern targetType = null;//template.parameterDict.get(counter);
+        // create individual for each log line; with aggregation its links are collected first, see summarizeLogLine
+        Node lineInstance = aggregator == null ? getLineInstance(output, batch, row) : null;
+        List<Node> links = aggregator == null ? null : new ArrayList<>();
+        // types and labels of the entities of the line for the shards of its summary
+        CollectorStreamTriples headers = aggregator != null && aggregator.marksShards ? new CollectorStreamTriples() : null;
+
+        // get the parameters, sliced out of the content by the template if possible (see Template.parameters);
+        // values are only allocated when they are emitted
+        Template template = templateRegistry.getByEventId(batch.source, batch.eventId(row));
+        if (rawLog != null && template != null && !template.TemplateContent.equals(batch.eventTemplate(row)))
+            template = minedVersion(batch.eventTemplate(row), templateRegistry);
+        ParameterList parameters = template == null ? ParameterList.parse(batch.parameterList(row))
+                : template.parameters(batch.content(row), batch.parameterList(row));
+
+        // process parameter values
+        if (parameters.isEmpty()) {
+            metrics.line(batch.source, batch.eventId(row), 0, 0);
+            if (aggregator != null)
+                summarizeLogLine(batch, row, links, headers, output);
+            return; // if empty, skip this log line
+        }
 
-                        Iterator<EntityPattern> paramPattern = template.parameterDict.iterator();
+        if (template == null) {
+            metrics.line(batch.source, batch.eventId(row), parameters.size(), parameters.size());
+            if (aggregator != null)
+                summarizeLogLine(batch, row, links, headers, output);
+            return; // no annotated template for this log line
+        }
 
-                        while(paramPattern.hasNext()){
-                            EntityPattern currentPattern = paramPattern.next();
-                            if(currentPattern.position == counter) {
-                                targetType = currentPattern;
-                                break;
-                            }
-                        }
+        int unmatched = 0;
+        for (int counter = 0; counter < parameters.size(); counter++) {
+            EntityPattern targetType = template.getParameter(counter);
 
-                        if (targetType == null || targetType.className == null) // Placeholder parameter (unknown) only has a position
-                            continue; // if null, skip
-
-                        LOG.info(String.format("Found: %s of Type %s", parameter, targetType.className));
-                        if (targetType.isObject) {
-                            OntClass ontClass = dataModel.createClass(NS_CORE + targetType.className);
-
-                            Individual instance = ontClass.createIndividual(
-                                    NS_INSTANCE + targetType.className + "_" + parameter.trim()
-                                            .replaceAll("[\\[\\.\\]\\s]", "_"));
-                            instance.addProperty(RDFS.label, parameter);
-
-                            ObjectProperty property =
-                                    dataModel.createObjectProperty(NS_PARSER + targetType.propertyName);
-                            lineInstance.addProperty(property, instance);
-                        } else {
-                            DatatypeProperty property =
-                                    dataModel.createDatatypeProperty(NS_PARSER + targetType.propertyName);
-                            lineInstance.addProperty(property, parameter);
-                        }
-                    }
-                }
+            if (targetType == null || targetType.className == null) { // Placeholder parameter (unknown) only has a position
+                unmatched++;
+                continue; // if null, skip
+            }
+
+            String parameter = parameters.value(counter);
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("Found: {} of Type {}", parameter, targetType.className);
+            metrics.entity(targetType.className);
+            Node property = Vocabulary.parser(targetType.propertyName);
+            Node object = targetType.isObject ? entityCache.resolve(targetType.className, parameter, shard, output)
+                    : Vocabulary.literal(parameter);
+            if (headers != null && targetType.isObject)
+                EntityCache.header(object, targetType.className, parameter, headers);
+            if (entityIndex != null)
+                entityIndex.add(targetType.isObject ? object.getURI() : NS_INSTANCE + EntityCache.localName(targetType.className, parameter),
+                        batch.source, batch.lineId(row), batch.timestamp(row));
+            if (links != null) {
+                links.add(property);
+                links.add(object);
+            } else {
+                output.triple(Vocabulary.triple(lineInstance, property, object));
             }
         }
+        metrics.line(batch.source, batch.eventId(row), parameters.size(), unmatched);
+        if (aggregator != null)
+            summarizeLogLine(batch, row, links, headers, output);
+    }
 
+    /**
+     * @param templateContent EventTemplate of a mined line whose template was generalized after it, see parseRawLog
+     * @param templateRegistry
+     * @return the template version the line was mined with, so the line is parsed the same whenever it is processed
+     */
+    private static Template minedVersion(String templateContent, TemplateRegistry templateRegistry) {
         try {
-            //FileWriter out = new FileWriter("log_KG.ttl");// + DateTime.now().getMillis());
-            FileWriter out = new FileWriter(parserFilePath);
-            dataModel.write(out, "Turtle");
-        } catch (Exception e) {
-            LOG.error("Error writing ontology: " + e.toString());
+            return templateRegistry.getByHash(hashTemplate(templateContent));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
     }
 
+    /**
+     * @param batch
+     * @param row
+     * @return marker of the shard the triples of a log line go to, see ShardedOutput
+     */
+    private static ShardedOutput.Marker shardMarker(LogLineBatch batch, int row) {
+        return ShardedOutput.line(batch.source, batch.component(row), batch.lineId(row), batch.timestamp(row));
+    }
+
+    /**
+     * Hand a log line to the aggregator, which adds it to the summary of its template and entities in its time window
+     * in the writer stage. The LogEntry is emitted as well unless summaries replace it, and for lines without a
+     * timestamp or of a window that is closed already.
+     *
+     * @param batch
+     * @param row
+     * @param links   property and object pairs of the line
+     * @param headers types and labels of the entities of the line, for the shards of the summaries; null without
+     * @param output
+     */
+    private static void summarizeLogLine(LogLineBatch batch, int row, List<Node> links, CollectorStreamTriples headers,
+                                         StreamRDF output) {
+        CollectorStreamTriples entry = new CollectorStreamTriples();
+        if (shardBy != null)
+            entry.triple(shardMarker(batch, row).continued()); // back from the shards of summaries closed by the line
+        Node lineInstance = getLineInstance(entry, batch, row);
+        for (int i = 0; i < links.size(); i += 2)
+            entry.triple(Vocabulary.triple(lineInstance, links.get(i), links.get(i + 1)));
+        output.triple(WindowAggregator.line(batch.eventId(row), batch.timestamp(row), batch.lineId(row), links,
+                headers == null ? null : headers.getCollected(), entry.getCollected()));
+    }
+
     /**
      * (1) take each log line and produce instance of LogEntry in the KG;
      * <p>
      * (2) add basic information into the LogEntry resource
      *
-     * @param dataModel
-     * @param logline
+     * @param output
+     * @param batch
+     * @param row
      * @return
      */
-    private static Individual getLineInstance(OntModel dataModel, LogLine logline) {
-
-        OntClass logLineClass = dataModel.createClass(NS_CORE + "LogEntry");
-        OntClass sourceClass = dataModel.createClass(NS_PARSER + "Source");
-
-        DatatypeProperty contentProperty = dataModel.createDatatypeProperty(NS_CORE + "logMessage");
-        DatatypeProperty dateProperty = dataModel.createDatatypeProperty(NS_CORE + "timestamp");
-        DatatypeProperty levelProperty = dataModel.createDatatypeProperty(NS_CORE + "level");
-        ObjectProperty sourceProperty = dataModel.createObjectProperty(NS_PARSER + "hasSource");
-        DatatypeProperty sequenceProperty = dataModel.createDatatypeProperty(NS_PARSER + "sequence");
+    static Node getLineInstance(StreamRDF output, LogLineBatch batch, int row) {
 
-        // Create instance for log line - how to name it that it is unique enough?
-        Individual lineInstance = logLineClass.createIndividual(NS_INSTANCE + "Logline_" + logline.LineId + "_SOURCE_" + logline.EventMonth + "_" + logline.EventDay + "_" + logline.EventTime);
+        // Create instance for log line, unique by LineId within its source
+        Node lineInstance = Vocabulary.instance("Logline_" + batch.lineId(row) + "_" + batch.source + "_" + batch.month(row) + "_" + batch.day(row) + "_" + batch.time(row));
+        Node sourceInstance = Vocabulary.instance(batch.component(row));
+        output.triple(Vocabulary.triple(sourceInstance, Vocabulary.TYPE, Vocabulary.SOURCE));
+        output.triple(Vocabulary.triple(lineInstance, Vocabulary.TYPE, Vocabulary.LOG_ENTRY));
 
         // Add basic properties of log line
-        DatatypeProperty templateIdProperty = dataModel.createDatatypeProperty(NS_PARSER + "templateId");
-        lineInstance.addProperty(templateIdProperty, logline.EventId);
-        lineInstance.addProperty(contentProperty, logline.Content);
-        try {
-            lineInstance.addProperty(dateProperty, getDate(logline.EventMonth, logline.EventDay, logline.EventTime));
-        } catch (ParseException e) {
-            e.printStackTrace();
-        }
-        lineInstance.addProperty(levelProperty, logline.Level);
-        lineInstance.addLiteral(sequenceProperty, logline.LineId);
+        output.triple(Vocabulary.triple(lineInstance, Vocabulary.TEMPLATE_ID, Vocabulary.literal(batch.eventId(row))));
+        output.triple(Vocabulary.triple(lineInstance, Vocabulary.LOG_MESSAGE, Vocabulary.literal(batch.content(row))));
+        if (batch.timestamp(row) != LogLineBatch.NO_TIMESTAMP)
+            output.triple(Vocabulary.triple(lineInstance, Vocabulary.TIMESTAMP,
+                    Vocabulary.literal(TimestampParser.format(batch.timestamp(row)))));
+        output.triple(Vocabulary.triple(lineInstance, Vocabulary.LEVEL, Vocabulary.literal(batch.level(row))));
+        output.triple(Vocabulary.triple(lineInstance, Vocabulary.SEQUENCE, Vocabulary.literal(batch.lineId(row))));
 
         // link to source
-        Individual sourceInstance = sourceClass.createIndividual(NS_INSTANCE + logline.Component);
-        lineInstance.addProperty(sourceProperty, sourceInstance);
+        output.triple(Vocabulary.triple(lineInstance, Vocabulary.HAS_SOURCE, sourceInstance));
 
         return lineInstance;
     }
-
-    /**
-     * Create a correctly formatted date from inputs
-     *
-     * @param month
-     * @param day
-     * @param time
-     * @return Date
-     */
-    private static String getDate(String month, String day, String time) throws ParseException {
-
-        day = StringUtils.leftPad(day, 2, "0");
-
-        Calendar cal = Calendar.getInstance();
-        cal.set(Calendar.YEAR, DateTime.now().getYear());
-        cal.set(Calendar.MONTH, new SimpleDateFormat("MMM", Locale.ENGLISH).parse(month).getMonth());
-        cal.set(Calendar.DAY_OF_MONTH, Integer.parseInt(day));
-        Date dateRepresentation = cal.getTime();
-
-        SimpleDateFormat xmlDateFormatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
-        String dateString;
-
-        dateString = xmlDateFormatter.format(dateRepresentation);
-
-        return dateString;
-    }
 }
@@ -0,0 +1,262 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reader of structured log CSVs (',' separated, '"' quoted with "" escapes, as written by the log parsers) over the
+ * memory-mapped file.
+ * <p>
+ * The reader only scans the bytes for the ends of the records (line breaks outside quotes) and hands the records out
+ * as byte ranges of the mapping (Row). Their fields are split and decoded as UTF-8 later by Row.decode, on the
+ * pipeline workers. The first line is the header and is skipped.
+ * <p>
+ * split() cuts the file into line-aligned ranges that can be read in parallel, by a reader each. It cuts at line
+ * breaks, records must not contain line breaks in quoted fields then (log lines never do).
+ */
+public class MappedCsvReader implements Closeable {
+
+    private static final int SPLIT_SCAN_BYTES = 64 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int maxRegion; // bytes mapped at a time
+    private final long dataStart; // first byte after the header
+
+    public MappedCsvReader(Path file) throws IOException {
+        this(file, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param file
+     * @param maxRegion bytes mapped at a time, larger files are mapped region by region
+     * @throws IOException
+     */
+    MappedCsvReader(Path file, int maxRegion) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.maxRegion = maxRegion;
+        this.dataStart = nextLine(0);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @param parts
+     * @return up to parts line-aligned byte ranges {start, end} of the records, in file order
+     * @throws IOException
+     */
+    public List<long[]> split(int parts) throws IOException {
+        List<long[]> ranges = new ArrayList<>();
+        long start = dataStart;
+        for (int part = 1; part <= parts && start < size; part++) {
+            long end = part == parts ? size : nextLine(dataStart + (size - dataStart) * part / parts);
+            if (end > start) {
+                ranges.add(new long[]{start, end});
+                start = end;
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * @return all records of the file
+     */
+    public Iterable<Row> rows() {
+        return rows(dataStart, size);
+    }
+
+    /**
+     * @param start first byte of a record, see split
+     * @param end   end of the range, exclusive
+     * @return the records of the range
+     */
+    public Iterable<Row> rows(long start, long end) {
+        return () -> new RowIterator(start, end);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close(); // the mapped regions stay valid until the rows are garbage collected
+    }
+
+    /**
+     * @param position
+     * @return the position after the next line break at or after position, or the file size
+     */
+    private long nextLine(long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SPLIT_SCAN_BYTES);
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0)
+                break;
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n')
+                    return position + i + 1;
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Scans a range record by record, mapping it region by region
+     */
+    private class RowIterator implements Iterator<Row> {
+        private final long end;
+        private MappedByteBuffer region;
+        private long regionStart;
+        private long position;
+        private Row next;
+
+        RowIterator(long start, long end) {
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null)
+                next = scan();
+            return next != null;
+        }
+
+        @Override
+        public Row next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Row row = next;
+            next = null;
+            return row;
+        }
+
+        private Row scan() {
+            try {
+                while (position < end) {
+                    if (region == null || position >= regionStart + region.limit())
+                        map(position);
+
+                    int offset = (int) (position - regionStart);
+                    int limit = region.limit();
+                    boolean quoted = false;
+                    int i = offset;
+                    while (i < limit) {
+                        byte b = region.get(i);
+                        if (b == '"')
+                            quoted = !quoted;
+                        else if (b == '\n' && !quoted)
+                            break;
+                        i++;
+                    }
+
+                    if (i == limit && regionStart + limit < end) {
+                        // the record crosses the end of the region, map again from its start
+                        if (offset == 0)
+                            throw new IllegalStateException("Record at byte " + position + " is larger than " + maxRegion + " bytes");
+                        map(position);
+                        continue;
+                    }
+
+                    position = regionStart + Math.min(i + 1, limit);
+                    int rowEnd = i;
+                    if (rowEnd > offset && region.get(rowEnd - 1) == '\r')
+                        rowEnd--;
+                    if (rowEnd > offset)
+                        return new Row(region, offset, rowEnd);
+                    // empty line, skip it
+                }
+                return null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void map(long start) throws IOException {
+            regionStart = start;
+            region = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(maxRegion, end - start));
+        }
+    }
+
+    /**
+     * A record as a byte range of the mapped file, decoded on demand
+     */
+    public static class Row {
+
+        // buffer rows are copied into for decoding, per worker thread
+        private static final ThreadLocal<byte[][]> SCRATCH = ThreadLocal.withInitial(() -> new byte[][]{new byte[4096]});
+
+        private final ByteBuffer buffer;
+        private final int start;
+        private final int end;
+
+        Row(ByteBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Split the record into its fields and decode them as UTF-8
+         *
+         * @param fields receives the first fields.length fields, further fields are not decoded
+         * @return number of fields decoded
+         */
+        public int decode(String[] fields) {
+            int length = end - start;
+            byte[][] scratch = SCRATCH.get();
+            if (scratch[0].length < length)
+                scratch[0] = new byte[Math.max(length, scratch[0].length * 2)];
+            byte[] bytes = scratch[0];
+            ByteBuffer view = buffer.duplicate();
+            view.position(start);
+            view.get(bytes, 0, length);
+
+            int count = 0;
+            int i = 0;
+            while (count < fields.length) {
+                if (i < length && bytes[i] == '"') {
+                    // quoted field, "" stands for a quote; unescaped in place
+                    int out = ++i;
+                    int valueStart = out;
+                    while (i < length) {
+                        if (bytes[i] == '"') {
+                            if (i + 1 < length && bytes[i + 1] == '"') {
+                                bytes[out++] = '"';
+                                i += 2;
+                                continue;
+                            }
+                            i++;
+                            break;
+                        }
+                        bytes[out++] = bytes[i++];
+                    }
+                    fields[count++] = new String(bytes, valueStart, out - valueStart, StandardCharsets.UTF_8);
+                    while (i < length && bytes[i] != ',')
+                        i++; // characters after the closing quote are dropped
+                } else {
+                    int valueStart = i;
+                    while (i < length && bytes[i] != ',')
+                        i++;
+                    fields[count++] = new String(bytes, valueStart, i - valueStart, StandardCharsets.UTF_8);
+                }
+
+                if (i >= length)
+                    break;
+                i++; // separator
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+import edu.stanford.nlp.ie.crf.CRFClassifier;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.util.Triple;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Named entity recognition (Stanford CoreNLP CRF classifier) for template parameters no regex pattern recognizes.
+ * <p>
+ * The model is only loaded on first use, a run without unmatched parameters (or without --ner) never touches
+ * CoreNLP. All unmatched parameters of a template are classified in one pass over the content of its example line,
+ * so the values keep their context. The labels of the most recently seen values are cached (LRU, maxCachedValues),
+ * only a value that was evicted is classified again.
+ */
+public class NerClassifier {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NerClassifier.class);
+
+    public static final String DEFAULT_MODEL = "edu/stanford/nlp/models/ner/english.all.3class.distsim.crf.ser.gz";
+    public static final int DEFAULT_CACHE_SIZE = 100_000;
+
+    private static final String NO_ENTITY = "O";
+
+    // entity patterns of the NER labels, the labels of the 3 class model
+    private static final Map<String, EntityPattern> LABEL_PATTERNS = new LinkedHashMap<>();
+
+    static {
+        LABEL_PATTERNS.put("PERSON", new EntityPattern("Person", "connectedPerson", true, null, EnumPatternType.NamedEntity));
+        LABEL_PATTERNS.put("LOCATION", new EntityPattern("Location", "connectedLocation", true, null, EnumPatternType.NamedEntity));
+        LABEL_PATTERNS.put("ORGANIZATION", new EntityPattern("Organization", "connectedOrganization", true, null, EnumPatternType.NamedEntity));
+    }
+
+    private final String modelPath;
+    private final ParserMetrics metrics;
+    private final Map<String, String> labels; // value to its NER label, NO_ENTITY if none
+    private CRFClassifier<CoreLabel> classifier;
+
+    /**
+     * @param modelPath serialized CRF classifier, on the classpath or a file
+     * @param metrics   may be null
+     */
+    public NerClassifier(String modelPath, ParserMetrics metrics) {
+        this(modelPath, DEFAULT_CACHE_SIZE, metrics);
+    }
+
+    /**
+     * @param modelPath       serialized CRF classifier, on the classpath or a file
+     * @param maxCachedValues maximum number of values whose label is cached
+     * @param metrics         may be null
+     */
+    public NerClassifier(String modelPath, int maxCachedValues, ParserMetrics metrics) {
+        this.modelPath = modelPath;
+        this.metrics = metrics;
+        this.labels = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxCachedValues;
+            }
+        };
+    }
+
+    /**
+     * @return the entity patterns NER results are mapped to, for declaring their classes and properties
+     */
+    public static Collection<EntityPattern> patterns() {
+        return LABEL_PATTERNS.values();
+    }
+
+    /**
+     * Classify the parameters without a regex match
+     *
+     * @param content content of the log line the values were taken from
+     * @param values  parameter values of the line
+     * @param matches regex matches of the values, only the values without a match are classified
+     * @return entity patterns (copies) of the values recognized as named entities, null for all other values
+     * @throws CloneNotSupportedException
+     */
+    public synchronized EntityPattern[] classify(String content, String[] values, EntityPattern[] matches) throws CloneNotSupportedException {
+        EntityPattern[] entities = new EntityPattern[values.length];
+
+        // labels of the cached values, values without letters are never named entities
+        String[] valueLabels = new String[values.length];
+        List<String> pending = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            if (matches[i] != null)
+                continue;
+            valueLabels[i] = labels.get(values[i]);
+            if (valueLabels[i] == null) {
+                if (hasLetter(values[i])) {
+                    pending.add(values[i]);
+                } else {
+                    valueLabels[i] = NO_ENTITY;
+                    labels.put(values[i], NO_ENTITY);
+                }
+            }
+        }
+        if (!pending.isEmpty()) {
+            Map<String, String> pendingLabels = classifyPending(content, pending);
+            for (int i = 0; i < values.length; i++) {
+                if (valueLabels[i] == null && matches[i] == null)
+                    valueLabels[i] = pendingLabels.get(values[i]);
+            }
+        }
+
+        for (int i = 0; i < values.length; i++) {
+            if (matches[i] != null)
+                continue;
+            EntityPattern pattern = LABEL_PATTERNS.get(valueLabels[i]);
+            if (pattern != null)
+                entities[i] = (EntityPattern) pattern.clone();
+        }
+        return entities;
+    }
+
+    /**
+     * @return number of values whose label is cached
+     */
+    public synchronized int size() {
+        return labels.size();
+    }
+
+    /**
+     * Label the pending values by the entities of the content that overlap them. Values that do not occur in the
+     * content are classified together on their own, separated by line breaks.
+     *
+     * @return the labels of the pending values, they are cached as well
+     */
+    private Map<String, String> classifyPending(String content, List<String> pending) {
+        long start = System.nanoTime();
+
+        StringBuilder text = new StringBuilder(content);
+        int[] starts = new int[pending.size()];
+        for (int i = 0; i < pending.size(); i++) {
+            String value = pending.get(i);
+            starts[i] = content.indexOf(value);
+            if (starts[i] < 0) {
+                text.append("\n\n");
+                starts[i] = text.length();
+                text.append(value);
+            }
+        }
+
+        Map<String, String> pendingLabels = new HashMap<>();
+        List<Triple<String, Integer, Integer>> entities = entities(text.toString());
+        for (int i = 0; i < pending.size(); i++) {
+            int end = starts[i] + pending.get(i).length();
+            String label = NO_ENTITY;
+            for (Triple<String, Integer, Integer> entity : entities) {
+                if (entity.second() < end && entity.third() > starts[i]) {
+                    label = entity.first();
+                    break;
+                }
+            }
+            pendingLabels.put(pending.get(i), label);
+            labels.put(pending.get(i), label);
+            if (LOG.isDebugEnabled())
+                LOG.debug("NER: {} is {}", pending.get(i), label);
+        }
+
+        if (metrics != null)
+            metrics.stage(ParserMetrics.Stage.NamedEntityRecognition, start);
+        return pendingLabels;
+    }
+
+    /**
+     * Run the model over a text, it is loaded on the first call
+     *
+     * @return the entities of the text as label, start and end offset
+     */
+    List<Triple<String, Integer, Integer>> entities(String text) {
+        return model().classifyToCharacterOffsets(text);
+    }
+
+    private CRFClassifier<CoreLabel> model() {
+        if (classifier == null) {
+            try {
+                classifier = CRFClassifier.getClassifier(modelPath);
+            } catch (Exception e) {
+                throw new IllegalStateException("Error loading NER model " + modelPath, e);
+            }
+            LOG.info("Loaded NER model " + modelPath);
+        }
+        return classifier;
+    }
+
+    private static boolean hasLetter(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.isLetter(value.charAt(i)))
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,170 @@
+import java.util.Arrays;
+
+/**
+ * Tokenizer of the ParameterList column, a python list representation such as ['ns.example.com', '173.234.31.186'].
+ * <p>
+ * The list is scanned once and only the offsets of the values are kept. Values are views into the original text
+ * and are only turned into strings by value(), so parameters that are not emitted are never allocated.
+ * Quoted values may contain commas and escaped quotes ('it\'s', "it's"), unquoted values (numbers, None) are
+ * taken as they are.
+ * <p>
+ * A list can also be filled with slices of any text, e.g. the parameters a TemplateExtractor cuts out of a content.
+ */
+public class ParameterList {
+
+    private final String text;
+    private int size;
+    private int[] starts = new int[4];
+    private int[] ends = new int[4];
+    private boolean[] escaped = new boolean[4];
+
+    private ParameterList(String text) {
+        this.text = text;
+    }
+
+    /**
+     * @param text content of the ParameterList column
+     * @return the tokenized list, empty if the text is empty or not a list
+     */
+    public static ParameterList parse(String text) {
+        ParameterList list = new ParameterList(text);
+        int end = text.length();
+        while (end > 0 && Character.isWhitespace(text.charAt(end - 1)))
+            end--;
+        int i = 0;
+        while (i < end && Character.isWhitespace(text.charAt(i)))
+            i++;
+        if (i >= end || text.charAt(i) != '[' || text.charAt(end - 1) != ']')
+            return list; // if not a list, no parameters
+        i++;
+        end--;
+
+        while (i < end) {
+            char c = text.charAt(i);
+            if (c == ',' || Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '\'' || c == '"') {
+                // quoted value, up to the next unescaped quote of the same kind
+                int start = i + 1;
+                boolean hasEscapes = false;
+                int j = start;
+                while (j < end && text.charAt(j) != c) {
+                    if (text.charAt(j) == '\\') {
+                        hasEscapes = true;
+                        j++;
+                    }
+                    j++;
+                }
+                list.add(start, Math.min(j, end), hasEscapes);
+                i = j + 1;
+            } else {
+                // unquoted value, up to the next comma
+                int start = i;
+                int j = i;
+                while (j < end && text.charAt(j) != ',')
+                    j++;
+                int valueEnd = j;
+                while (valueEnd > start && Character.isWhitespace(text.charAt(valueEnd - 1)))
+                    valueEnd--;
+                list.add(start, valueEnd, false);
+                i = j + 1;
+            }
+        }
+        return list;
+    }
+
+    /**
+     * @param text
+     * @return an empty list of slices of the text, see add
+     */
+    static ParameterList slices(String text) {
+        return new ParameterList(text);
+    }
+
+    /**
+     * @param start      first character of the value in the text
+     * @param end        end of the value in the text, exclusive
+     * @param hasEscapes whether value() has to resolve escape sequences
+     */
+    void add(int start, int end, boolean hasEscapes) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+            escaped = Arrays.copyOf(escaped, size * 2);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        escaped[size] = hasEscapes;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param index
+     * @return the raw value as a view into the text, escape sequences are not resolved
+     */
+    public CharSequence view(int index) {
+        return text.subSequence(starts[index], ends[index]);
+    }
+
+    /**
+     * @param index
+     * @return the value with escape sequences resolved
+     */
+    public String value(int index) {
+        if (!escaped[index])
+            return text.substring(starts[index], ends[index]);
+
+        StringBuilder value = new StringBuilder(ends[index] - starts[index]);
+        for (int i = starts[index]; i < ends[index]; i++) {
+            char c = text.charAt(i);
+            if (c != '\\' || i + 1 >= ends[index]) {
+                value.append(c);
+                continue;
+            }
+
+            char escape = text.charAt(++i);
+            switch (escape) {
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 'x':
+                    int high = i + 2 < ends[index] ? Character.digit(text.charAt(i + 1), 16) : -1;
+                    int low = i + 2 < ends[index] ? Character.digit(text.charAt(i + 2), 16) : -1;
+                    if (high >= 0 && low >= 0) {
+                        value.append((char) (high * 16 + low));
+                        i += 2;
+                    } else {
+                        value.append(escape);
+                    }
+                    break;
+                default: // \\, \', \" and unknown escapes stand for the character itself
+                    value.append(escape);
+            }
+        }
+        return value.toString();
+    }
+
+    /**
+     * @return all values with escape sequences resolved
+     */
+    public String[] values() {
+        String[] values = new String[size];
+        for (int i = 0; i < size; i++)
+            values[i] = value(i);
+        return values;
+    }
+}
@@ -0,0 +1,172 @@
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.lang.CollectorStreamTriples;
+import org.apache.jena.riot.system.StreamRDF;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Staged pipeline for parsing log lines on several threads:
+ * <p>
+ * CSV read (reader thread) -> parameter/template resolution and triple generation (worker pool)
+ * -> writer (calling thread).
+ * <p>
+ * Lines are handed to the workers in batches. The batches are queued in input order in a bounded queue
+ * and the writer replays them in that order, so the output stays ordered by LineId and the number of
+ * batches in flight is limited. With a single worker the stages run one after the other on the calling thread.
+ * <p>
+ * The time of each stage is recorded in the ParserMetrics.
+ */
+public class ParsePipeline {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParsePipeline.class);
+
+    /**
+     * Work of the middle stages: turn one log line (a row of a batch) into triples
+     */
+    public interface LineProcessor {
+        void process(LogLineBatch batch, int row, StreamRDF output);
+    }
+
+    // marks the end of the input in the batch queue
+    private static final Future<Collection<Triple>> END = CompletableFuture.completedFuture(null);
+
+    private final int workerThreads;
+    private final int batchSize;
+    private final int queueCapacity;
+    private final ParserMetrics metrics;
+
+    public ParsePipeline(int workerThreads, int batchSize, int queueCapacity, ParserMetrics metrics) {
+        this.workerThreads = workerThreads;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Run all records through the pipeline and write the resulting triples to the output, in input order
+     *
+     * @param records   log line records, e.g. CSVRecords or LogLines
+     * @param decoder   turns a batch of records into a LogLineBatch, runs on the workers
+     * @param processor
+     * @param output
+     */
+    public <T> void run(Iterable<T> records, Function<List<T>, LogLineBatch> decoder, LineProcessor processor, StreamRDF output) {
+        if (workerThreads <= 1) {
+            runSequential(records.iterator(), decoder, processor, output);
+            return;
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(workerThreads);
+        BlockingQueue<Future<Collection<Triple>>> batches = new ArrayBlockingQueue<>(queueCapacity);
+
+        Thread reader = new Thread(() -> read(records, decoder, processor, workers, batches), "pipeline-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        try {
+            while (true) {
+                Future<Collection<Triple>> batch = batches.take();
+                if (batch == END)
+                    break;
+
+                write(batch.get(), output);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while writing log lines", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error processing log lines", e.getCause());
+        } finally {
+            reader.interrupt();
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Reader stage: cut the records into batches and submit them to the workers. The writer always gets END or a
+     * failed batch, whatever the records or the decoder throw.
+     */
+    private <T> void read(Iterable<T> records, Function<List<T>, LogLineBatch> decoder, LineProcessor processor,
+                          ExecutorService workers, BlockingQueue<Future<Collection<Triple>>> batches) {
+        Throwable error = null;
+        try {
+            Iterator<T> iterator = records.iterator();
+            while (iterator.hasNext()) {
+                List<T> batch = nextBatch(iterator);
+                batches.put(workers.submit(() -> process(batch, decoder, processor)));
+            }
+        } catch (InterruptedException e) {
+            return; // the writer stopped, nothing left to do
+        } catch (Throwable e) {
+            if (workers.isShutdown())
+                return; // the writer stopped and rejected the batch
+            error = e; // also Errors such as OutOfMemoryError
+        }
+
+        try {
+            if (error != null) {
+                LOG.error("Error reading log lines: " + error.toString());
+                CompletableFuture<Collection<Triple>> failed = new CompletableFuture<>();
+                failed.completeExceptionally(error);
+                batches.put(failed);
+            }
+            batches.put(END);
+        } catch (InterruptedException e) {
+            // the writer stopped, nothing left to do
+        }
+    }
+
+    /**
+     * All stages on the calling thread, batch by batch
+     */
+    private <T> void runSequential(Iterator<T> records, Function<List<T>, LogLineBatch> decoder, LineProcessor processor,
+                                   StreamRDF output) {
+        while (records.hasNext())
+            write(process(nextBatch(records), decoder, processor), output);
+    }
+
+    /**
+     * Reader stage: the next batch of records
+     */
+    private <T> List<T> nextBatch(Iterator<T> records) {
+        long start = System.nanoTime();
+        List<T> batch = new ArrayList<>(batchSize);
+        while (records.hasNext() && batch.size() < batchSize)
+            batch.add(records.next());
+        metrics.stage(ParserMetrics.Stage.CsvRead, start);
+        return batch;
+    }
+
+    /**
+     * Worker stage: process a batch of log lines into triples
+     */
+    private <T> Collection<Triple> process(List<T> records, Function<List<T>, LogLineBatch> decoder, LineProcessor processor) {
+        long start = System.nanoTime();
+        LogLineBatch batch = decoder.apply(records);
+        metrics.stage(ParserMetrics.Stage.CsvRead, start);
+
+        start = System.nanoTime();
+        CollectorStreamTriples collector = new CollectorStreamTriples();
+        for (int row = 0; row < batch.size; row++)
+            processor.process(batch, row, collector);
+        metrics.stage(ParserMetrics.Stage.TripleGeneration, start);
+        return collector.getCollected();
+    }
+
+    /**
+     * Writer stage: write the triples of a batch to the output
+     */
+    private void write(Collection<Triple> triples, StreamRDF output) {
+        long start = System.nanoTime();
+        for (Triple triple : triples)
+            output.triple(triple);
+        metrics.stage(ParserMetrics.Stage.Serialization, start);
+    }
+}
@@ -0,0 +1,314 @@
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and timers of a parser run. All methods are thread safe and cheap enough for the per-line path
+ * (LongAdders, no locks), the maps are keyed by pattern class name and EventId.
+ * <p>
+ * Exposed through JMX (see ParserMetricsMXBean) and a periodic summary in the log.
+ */
+public class ParserMetrics implements ParserMetricsMXBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParserMetrics.class);
+
+    /**
+     * Stages of the parser, see ParsePipeline
+     */
+    public enum Stage {
+        CsvRead, TemplateAnnotation, ParameterClassification, NamedEntityRecognition, TripleGeneration, Serialization
+    }
+
+    private static class PatternStats {
+        final LongAdder attempts = new LongAdder();
+        final LongAdder matchNanos = new LongAdder();
+        final LongAdder matches = new LongAdder();
+        final LongAdder entities = new LongAdder();
+
+        double matchMicros() {
+            long total = attempts.sum();
+            return total > 0 ? matchNanos.sum() / 1000.0 / total : 0;
+        }
+    }
+
+    private static class TemplateStats {
+        final LongAdder lines = new LongAdder();
+        final LongAdder parameters = new LongAdder();
+        final LongAdder unmatched = new LongAdder();
+
+        double unmatchedRate() {
+            long total = parameters.sum();
+            return total > 0 ? (double) unmatched.sum() / total : 0;
+        }
+    }
+
+    private final LongAdder[] stageNanos = new LongAdder[Stage.values().length];
+    private final LongAdder lines = new LongAdder();
+    private final LongAdder parameters = new LongAdder();
+    private final LongAdder unmatchedParameters = new LongAdder();
+    private final ConcurrentHashMap<String, PatternStats> patterns = new ConcurrentHashMap<>();
+    // by source and EventId, EventIds are only unique within a source
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, TemplateStats>> templates = new ConcurrentHashMap<>();
+    private volatile long startNanos = System.nanoTime();
+
+    private ScheduledExecutorService reporter;
+    private long reportedLines;
+    private long reportedNanos;
+
+    public ParserMetrics() {
+        for (int i = 0; i < stageNanos.length; i++)
+            stageNanos[i] = new LongAdder();
+    }
+
+    /**
+     * Add the time since start to a stage
+     *
+     * @param stage
+     * @param start System.nanoTime() at the start of the work
+     */
+    public void stage(Stage stage, long start) {
+        stageNanos[stage.ordinal()].add(System.nanoTime() - start);
+    }
+
+    /**
+     * Record one match attempt of a pattern
+     *
+     * @param className
+     * @param start   System.nanoTime() at the start of the attempt
+     * @param matched
+     */
+    public void patternAttempt(String className, long start, boolean matched) {
+        PatternStats stats = patternStats(className);
+        stats.matchNanos.add(System.nanoTime() - start);
+        stats.attempts.increment();
+        if (matched)
+            stats.matches.increment();
+    }
+
+    /**
+     * Record an entity emitted for a parameter classified by a pattern
+     *
+     * @param className
+     */
+    public void entity(String className) {
+        patternStats(className).entities.increment();
+    }
+
+    /**
+     * Record a parsed log line
+     *
+     * @param source         source of the line, e.g. OpenSSH_2k_A
+     * @param eventId
+     * @param parameterCount parameter values of the line
+     * @param unmatched      parameter values without pattern
+     */
+    public void line(String source, String eventId, int parameterCount, int unmatched) {
+        lines.increment();
+        if (eventId == null)
+            return;
+
+        ConcurrentHashMap<String, TemplateStats> sourceTemplates = templates.get(source);
+        if (sourceTemplates == null)
+            sourceTemplates = templates.computeIfAbsent(source, name -> new ConcurrentHashMap<>());
+        TemplateStats stats = sourceTemplates.get(eventId);
+        if (stats == null)
+            stats = sourceTemplates.computeIfAbsent(eventId, id -> new TemplateStats());
+        stats.lines.increment();
+        if (parameterCount > 0) {
+            parameters.add(parameterCount);
+            stats.parameters.add(parameterCount);
+        }
+        if (unmatched > 0) {
+            unmatchedParameters.add(unmatched);
+            stats.unmatched.add(unmatched);
+        }
+    }
+
+    private PatternStats patternStats(String className) {
+        PatternStats stats = patterns.get(className);
+        return stats != null ? stats : patterns.computeIfAbsent(className, name -> new PatternStats());
+    }
+
+    /**
+     * Register the metrics in the platform MBean server
+     */
+    public void register() {
+        try {
+            ObjectName name = new ObjectName("semantic-log-parser:type=ParserMetrics");
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name))
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        } catch (JMException e) {
+            LOG.warn("Metrics not available through JMX: " + e.toString());
+        }
+    }
+
+    /**
+     * Start the run: lines/sec are measured from here, and a summary is logged every interval until stopReporting
+     *
+     * @param intervalSeconds 0 to only log the final summary
+     */
+    public synchronized void startReporting(long intervalSeconds) {
+        startNanos = System.nanoTime();
+        reportedLines = lines.sum();
+        reportedNanos = startNanos;
+        if (intervalSeconds <= 0 || reporter != null)
+            return;
+
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(this::report, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop the periodic summary and log the final one
+     */
+    public synchronized void stopReporting() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+        LOG.info(getSummary());
+    }
+
+    private synchronized void report() {
+        long now = System.nanoTime();
+        long total = lines.sum();
+        double interval = (now - reportedNanos) / 1e9;
+        LOG.info(String.format(Locale.ROOT, "%d lines, %.0f lines/sec in the last %.0f sec%n%s",
+                total, interval > 0 ? (total - reportedLines) / interval : 0, interval, getSummary()));
+        reportedLines = total;
+        reportedNanos = now;
+    }
+
+    @Override
+    public long getLines() {
+        return lines.sum();
+    }
+
+    @Override
+    public double getLinesPerSecond() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds > 0 ? lines.sum() / seconds : 0;
+    }
+
+    @Override
+    public long getParameters() {
+        return parameters.sum();
+    }
+
+    @Override
+    public long getUnmatchedParameters() {
+        return unmatchedParameters.sum();
+    }
+
+    @Override
+    public double getUnmatchedParameterRate() {
+        long total = parameters.sum();
+        return total > 0 ? (double) unmatchedParameters.sum() / total : 0;
+    }
+
+    @Override
+    public Map<String, Long> getStageMillis() {
+        Map<String, Long> millis = new LinkedHashMap<>();
+        for (Stage stage : Stage.values())
+            millis.put(stage.name(), stageNanos[stage.ordinal()].sum() / 1_000_000);
+        return millis;
+    }
+
+    @Override
+    public Map<String, Long> getPatternMatches() {
+        Map<String, Long> matches = new TreeMap<>();
+        patterns.forEach((className, stats) -> matches.put(className, stats.matches.sum()));
+        return matches;
+    }
+
+    @Override
+    public Map<String, Double> getPatternMatchMicros() {
+        Map<String, Double> micros = new TreeMap<>();
+        patterns.forEach((className, stats) -> micros.put(className, stats.matchMicros()));
+        return micros;
+    }
+
+    @Override
+    public Map<String, Long> getPatternEntities() {
+        Map<String, Long> entities = new TreeMap<>();
+        patterns.forEach((className, stats) -> entities.put(className, stats.entities.sum()));
+        return entities;
+    }
+
+    @Override
+    public Map<String, Long> getTemplateHits() {
+        Map<String, Long> hits = new TreeMap<>();
+        templates.forEach((source, sourceTemplates) -> sourceTemplates.forEach((eventId, stats) ->
+                hits.put(templateKey(source, eventId), stats.lines.sum())));
+        return hits;
+    }
+
+    @Override
+    public Map<String, Double> getTemplateUnmatchedRates() {
+        Map<String, Double> rates = new TreeMap<>();
+        templates.forEach((source, sourceTemplates) -> sourceTemplates.forEach((eventId, stats) ->
+                rates.put(templateKey(source, eventId), stats.unmatchedRate())));
+        return rates;
+    }
+
+    /**
+     * @return key of the template stats of a source, e.g. OpenSSH_2k_A/E27
+     */
+    static String templateKey(String source, String eventId) {
+        return source + "/" + eventId;
+    }
+
+    @Override
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder(String.format(Locale.ROOT,
+                "Parsed %d lines (%.0f lines/sec), %d parameters, %.1f%% unmatched",
+                getLines(), getLinesPerSecond(), getParameters(), 100 * getUnmatchedParameterRate()));
+        summary.append(System.lineSeparator()).append("  stages (ms): ").append(getStageMillis());
+
+        // each line is built from the stats of one pattern or template, new ones may be added meanwhile
+        new TreeMap<>(patterns).forEach((className, stats) -> summary.append(System.lineSeparator())
+                .append(String.format(Locale.ROOT, "  pattern %s: %d matches, %.1f us/attempt, %d entities",
+                        className, stats.matches.sum(), stats.matchMicros(), stats.entities.sum())));
+
+        // top templates by hits
+        List<Map.Entry<String, Long>> hits = new ArrayList<>();
+        Map<String, Double> unmatchedRates = new HashMap<>();
+        templates.forEach((source, sourceTemplates) -> sourceTemplates.forEach((eventId, stats) -> {
+            String key = templateKey(source, eventId);
+            hits.add(new AbstractMap.SimpleEntry<>(key, stats.lines.sum()));
+            unmatchedRates.put(key, stats.unmatchedRate());
+        }));
+        hits.stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(10)
+                .forEach(hit -> summary.append(System.lineSeparator())
+                        .append(String.format(Locale.ROOT, "  template %s: %d lines, %.1f%% unmatched",
+                                hit.getKey(), hit.getValue(), 100 * unmatchedRates.get(hit.getKey()))));
+        return summary.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder nanos : stageNanos)
+            nanos.reset();
+        lines.reset();
+        parameters.reset();
+        unmatchedParameters.reset();
+        patterns.clear();
+        templates.clear();
+        startNanos = System.nanoTime();
+    }
+}
@@ -0,0 +1,51 @@
+import java.util.Map;
+
+/**
+ * JMX view of the ParserMetrics, registered as semantic-log-parser:type=ParserMetrics
+ */
+public interface ParserMetricsMXBean {
+
+    long getLines();
+
+    double getLinesPerSecond();
+
+    long getParameters();
+
+    long getUnmatchedParameters();
+
+    double getUnmatchedParameterRate();
+
+    /**
+     * @return total time per stage in milliseconds (summed over all threads)
+     */
+    Map<String, Long> getStageMillis();
+
+    /**
+     * @return successful match attempts per pattern
+     */
+    Map<String, Long> getPatternMatches();
+
+    /**
+     * @return average time of a pattern match attempt per pattern in microseconds
+     */
+    Map<String, Double> getPatternMatchMicros();
+
+    /**
+     * @return entities emitted per pattern
+     */
+    Map<String, Long> getPatternEntities();
+
+    /**
+     * @return log lines per source and EventId (source/EventId)
+     */
+    Map<String, Long> getTemplateHits();
+
+    /**
+     * @return share of the parameters without pattern per source and EventId (source/EventId)
+     */
+    Map<String, Double> getTemplateUnmatchedRates();
+
+    String getSummary();
+
+    void reset();
+}
@@ -0,0 +1,187 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+
+/**
+ * Compiled set of EntityPatterns that classifies all parameter values of a log line at once.
+ * <p>
+ * (1) the literals of all patterns are looked up in a single scan over the text, patterns whose literals
+ * do not occur are never run;
+ * <p>
+ * (2) LogLine patterns are run on the content of a line once, not once per parameter value;
+ * <p>
+ * (3) each parameter value is assigned to the first pattern (in pattern order) that matches the value
+ * or whose first match in the content contains the value, as before the patterns were compiled.
+ * <p>
+ * The values used to keep the space before them (" 2" of "['root', '5.36.59.76', '42393', '2']"), which mostly
+ * kept them from matching inside a longer number. Now that the values are trimmed, a LogLine match has to contain
+ * the value as a whole token instead: "2" is not part of "port 42393".
+ */
+public class PatternSet {
+
+    /**
+     * Literal of a pattern prefilter, '#' in the text stands for any digit
+     */
+    private static class Literal {
+        final String text;
+        final int pattern;
+
+        Literal(String text, int pattern) {
+            this.text = text;
+            this.pattern = pattern;
+        }
+
+        boolean matches(CharSequence value, int offset) {
+            if (offset + text.length() > value.length())
+                return false;
+            for (int i = 0; i < text.length(); i++) {
+                char expected = text.charAt(i);
+                char actual = value.charAt(offset + i);
+                if (expected == '#' ? !Character.isDigit(actual) : expected != actual)
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    private final EntityPattern[] patterns;
+    private final boolean[] unfiltered; // patterns without literals are always run
+    private final Literal[][] literalsByFirstChar = new Literal[128][];
+    private final ParserMetrics metrics; // if null, nothing is recorded
+
+    public PatternSet(List<EntityPattern> patterns) {
+        this(patterns, null);
+    }
+
+    /**
+     * @param patterns
+     * @param metrics  records the classification time and the match attempts per pattern
+     */
+    public PatternSet(List<EntityPattern> patterns, ParserMetrics metrics) {
+        this.metrics = metrics;
+        this.patterns = patterns.toArray(new EntityPattern[0]);
+        this.unfiltered = new boolean[this.patterns.length];
+
+        List<List<Literal>> index = new ArrayList<>();
+        for (int c = 0; c < 128; c++)
+            index.add(new ArrayList<>());
+
+        for (int p = 0; p < this.patterns.length; p++) {
+            String[] literals = this.patterns[p].literals;
+            unfiltered[p] = literals == null || literals.length == 0;
+            if (unfiltered[p])
+                continue;
+
+            for (String literal : literals) {
+                char first = literal.charAt(0);
+                if (first == '#') {
+                    for (char digit = '0'; digit <= '9'; digit++)
+                        index.get(digit).add(new Literal(literal, p));
+                } else if (first < 128) {
+                    index.get(first).add(new Literal(literal, p));
+                } else {
+                    unfiltered[p] = true; // cannot be indexed, always run it
+                }
+            }
+        }
+
+        for (int c = 0; c < 128; c++) {
+            if (!index.get(c).isEmpty())
+                literalsByFirstChar[c] = index.get(c).toArray(new Literal[0]);
+        }
+    }
+
+    /**
+     * Single scan over the text: which patterns may match it
+     *
+     * @param text
+     * @return candidate flag per pattern
+     */
+    private boolean[] candidates(CharSequence text) {
+        boolean[] candidates = unfiltered.clone();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 128 || literalsByFirstChar[c] == null)
+                continue;
+            for (Literal literal : literalsByFirstChar[c]) {
+                if (!candidates[literal.pattern] && literal.matches(text, i))
+                    candidates[literal.pattern] = true;
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Classify all parameter values of a log line
+     *
+     * @param content    content of the log line, used by LogLine patterns
+     * @param values     parameter values of the log line
+     * @return matching pattern per value, or null if no pattern matches the value
+     */
+    public EntityPattern[] classify(String content, String[] values) {
+        EntityPattern[] result = new EntityPattern[values.length];
+        if (values.length == 0)
+            return result;
+        long start = System.nanoTime();
+
+        // one run of each LogLine pattern on the content, only its first match counts
+        boolean[] contentCandidates = candidates(content);
+        int[][] spans = new int[patterns.length][];
+        for (int p = 0; p < patterns.length; p++) {
+            if (patterns[p].type == EnumPatternType.LogLine && contentCandidates[p]) {
+                long attempt = System.nanoTime();
+                Matcher matcher = patterns[p].pattern.matcher(content);
+                if (matcher.find())
+                    spans[p] = new int[]{matcher.start(), matcher.end()};
+                if (metrics != null)
+                    metrics.patternAttempt(patterns[p].className, attempt, spans[p] != null);
+            }
+        }
+
+        for (int v = 0; v < values.length; v++) {
+            String value = values[v];
+            boolean[] valueCandidates = null;
+
+            for (int p = 0; p < patterns.length && result[v] == null; p++) {
+                EntityPattern pattern = patterns[p];
+                if (pattern.type == EnumPatternType.Parameter) {
+                    // the pattern match property values exactly
+                    if (valueCandidates == null)
+                        valueCandidates = candidates(value);
+                    if (valueCandidates[p]) {
+                        long attempt = System.nanoTime();
+                        if (pattern.pattern.matcher(value).find())
+                            result[v] = pattern;
+                        if (metrics != null)
+                            metrics.patternAttempt(pattern.className, attempt, result[v] != null);
+                    }
+                } else if (pattern.type == EnumPatternType.LogLine) {
+                    // the pattern requires "context" information from its surrounding
+                    int[] span = spans[p];
+                    if (span != null && containsToken(content, value, span[0], span[1]))
+                        result[v] = pattern;
+                }
+            }
+        }
+
+        if (metrics != null)
+            metrics.stage(ParserMetrics.Stage.ParameterClassification, start);
+        return result;
+    }
+
+    /**
+     * @return true if the value occurs within [start, end) of the content and is not part of a longer word
+     */
+    private static boolean containsToken(String content, String value, int start, int end) {
+        if (value.isEmpty())
+            return false;
+        for (int found = content.indexOf(value, start); found >= 0 && found + value.length() <= end;
+             found = content.indexOf(value, found + 1)) {
+            int after = found + value.length();
+            if ((found == start || !Character.isLetterOrDigit(content.charAt(found - 1)))
+                    && (after == end || !Character.isLetterOrDigit(content.charAt(after))))
+                return true;
+        }
+        return false;
+    }
+}
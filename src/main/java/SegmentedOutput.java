@@ -0,0 +1,197 @@
+import org.apache.jena.atlas.io.IO;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.apache.jena.sparql.core.Quad;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streaming output of the log KG in one of the EnumOutputFormats, optionally gzip compressed and split into
+ * segments of at most maxTriples triples or (approximately) maxBytes bytes on disk.
+ * <p>
+ * Segments are named like the output path with a sequence number before the extension, e.g. log_KG-00001.nt.gz.
+ * Prefixes are repeated in every segment, so each segment can be loaded on its own.
+ */
+public class SegmentedOutput implements StreamRDF {
+
+    /**
+     * Counts the bytes written to the file
+     */
+    static class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    private final Path path;
+    private final EnumOutputFormat format;
+    private final boolean gzip;
+    private final long maxTriples;
+    private final long maxBytes;
+    private final boolean append;
+
+    private final List<String[]> prefixes = new ArrayList<>();
+    private final List<Path> segments = new ArrayList<>();
+    private StreamRDF writer;
+    private OutputStream out;
+    private CountingOutputStream counter;
+    private long triples;
+    private boolean suspended; // the current segment was closed by suspend, not rotated
+
+    /**
+     * @param path       output path, segments get a sequence number and gzip the .gz extension
+     * @param format
+     * @param gzip
+     * @param maxTriples triples per segment, 0 for no limit
+     * @param maxBytes   bytes per segment, 0 for no limit
+     * @param append     append to an existing output (only without segments)
+     */
+    public SegmentedOutput(Path path, EnumOutputFormat format, boolean gzip, long maxTriples, long maxBytes, boolean append) {
+        if (append && (maxTriples > 0 || maxBytes > 0))
+            throw new IllegalArgumentException("Segmented output cannot be appended to");
+        this.path = path;
+        this.format = format;
+        this.gzip = gzip;
+        this.maxTriples = maxTriples;
+        this.maxBytes = maxBytes;
+        this.append = append;
+    }
+
+    /**
+     * @param path
+     * @param gzip
+     * @return the path of the output file without segments
+     */
+    public static Path filePath(Path path, boolean gzip) {
+        return gzip && !path.toString().endsWith(".gz") ? path.resolveSibling(path.getFileName() + ".gz") : path;
+    }
+
+    /**
+     * @return the files written so far
+     */
+    public List<Path> segments() {
+        return segments;
+    }
+
+    private boolean segmented() {
+        return maxTriples > 0 || maxBytes > 0;
+    }
+
+    private Path segmentPath(int segment) {
+        if (!segmented())
+            return filePath(path, gzip);
+
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String numbered = dot > 0
+                ? String.format("%s-%05d%s", name.substring(0, dot), segment, name.substring(dot))
+                : String.format("%s-%05d", name, segment);
+        return filePath(path.resolveSibling(numbered), gzip);
+    }
+
+    private void openSegment() {
+        boolean reopened = suspended;
+        suspended = false;
+        Path segmentPath = reopened ? segments.get(segments.size() - 1) : segmentPath(segments.size() + 1);
+        try {
+            if (segmentPath.toAbsolutePath().getParent() != null)
+                Files.createDirectories(segmentPath.toAbsolutePath().getParent());
+            OutputStream file = append || reopened
+                    ? Files.newOutputStream(segmentPath, StandardOpenOption.CREATE, StandardOpenOption.APPEND)
+                    : Files.newOutputStream(segmentPath);
+            counter = new CountingOutputStream(new BufferedOutputStream(file, 1 << 16));
+            if (reopened)
+                counter.count = Files.size(segmentPath);
+            out = gzip ? new GZIPOutputStream(counter, 1 << 16) : counter;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening output " + segmentPath, e);
+        }
+        if (!reopened) {
+            segments.add(segmentPath);
+            triples = 0;
+        }
+
+        writer = StreamRDFWriter.getWriterStream(out, format.streamFormat);
+        writer.start();
+        for (String[] prefix : prefixes)
+            writer.prefix(prefix[0], prefix[1]);
+    }
+
+    private void closeSegment() {
+        if (writer == null)
+            return;
+        writer.finish();
+        IO.close(out);
+        writer = null;
+    }
+
+    @Override
+    public void start() {
+        openSegment();
+    }
+
+    @Override
+    public void triple(Triple triple) {
+        if (writer == null)
+            openSegment();
+        writer.triple(triple);
+        triples++;
+
+        // rotate between triples, the next segment is opened with the next triple
+        if (maxTriples > 0 && triples >= maxTriples || maxBytes > 0 && counter.count >= maxBytes)
+            closeSegment();
+    }
+
+    @Override
+    public void quad(Quad quad) {
+        triple(quad.asTriple());
+    }
+
+    @Override
+    public void base(String base) {
+    }
+
+    @Override
+    public void prefix(String prefix, String iri) {
+        prefixes.add(new String[]{prefix, iri});
+        if (writer != null)
+            writer.prefix(prefix, iri);
+    }
+
+    /**
+     * Close the current file to free its handle and buffers, the next triple opens it again and appends to it (gzip
+     * as another member, Turtle with the prefixes repeated)
+     */
+    public void suspend() {
+        if (writer == null)
+            return;
+        closeSegment();
+        suspended = true;
+    }
+
+    @Override
+    public void finish() {
+        closeSegment();
+    }
+}
@@ -0,0 +1,344 @@
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.sparql.core.Quad;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+
+/**
+ * Streaming output of the log KG split into shards by log source, component (without its process id) and time
+ * bucket, e.g. log_KG-OpenSSH_2k_A-sshd-2019-12-10.nt, plus a manifest of the shards (log_KG-manifest.csv).
+ * <p>
+ * The shard of the triples is given in-band: a Marker is emitted before the triples of each log line and summary
+ * (see line and summary). Markers pass the pipeline and SharedOutput like any other triple and are never written,
+ * all triples up to the next marker go to its shard. That includes the type and label of an entity, which are
+ * emitted with the first line of each shard that mentions it (see Marker.shard and EntityCache), and with the
+ * summaries of the entity.
+ * <p>
+ * Every shard has its own writer (a SegmentedOutput). Triples are buffered per shard and the buffers are written by
+ * a pool of threads, so different shards are serialized and flushed concurrently while the buffers of a shard are
+ * written in order. Only the writers of the maxOpenWriters shards written most recently are open, the writer of
+ * another shard is suspended and appends to its file (or starts its next segment) when the shard gets triples again.
+ * <p>
+ * The manifest has a row per shard with its files, number of log lines, first and last LineId, number of triples
+ * and first and last timestamp, so consumers can prune the shards and load them in parallel.
+ */
+public class ShardedOutput implements StreamRDF {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ShardedOutput.class);
+
+    public static final String SUMMARIES = "summaries"; // component of the shards of the LogSummaries
+
+    private static final int NO_LINE = -1;
+    private static final Node MARKER_NODE = NodeFactory.createBlankNode("shard");
+    private static final int BUFFER_TRIPLES = 10_000; // triples of a shard handed to a writer thread at a time
+    private static final int MAX_BUFFERED_TRIPLES = 50 * BUFFER_TRIPLES; // all shards, small buffers are flushed then
+
+    /**
+     * Marks the start of the triples of a log line or summary, never written
+     */
+    public static class Marker extends Triple {
+        final String source;
+        final String component;
+        final int lineId;
+        final long firstTimestamp;
+        final long lastTimestamp;
+        final boolean continued; // repeats the marker of the previous triples, not another line
+
+        private Marker(String source, String component, int lineId, long firstTimestamp, long lastTimestamp, boolean continued) {
+            super(MARKER_NODE, MARKER_NODE, MARKER_NODE);
+            this.source = source;
+            this.component = component;
+            this.lineId = lineId;
+            this.firstTimestamp = firstTimestamp;
+            this.lastTimestamp = lastTimestamp;
+            this.continued = continued;
+        }
+
+        /**
+         * @param bucket time bucket of the shards
+         * @return key of the shard of the marked triples
+         */
+        public String shard(EnumShardBucket bucket) {
+            return source + '\u0000' + component + '\u0000' + bucket.start(firstTimestamp);
+        }
+
+        /**
+         * @return the same marker for the next triples of the same line, e.g. at the start of another batch
+         */
+        public Marker continued() {
+            return continued ? this : new Marker(source, component, lineId, firstTimestamp, lastTimestamp, true);
+        }
+    }
+
+    /**
+     * Per shard writer and statistics
+     */
+    private class Shard {
+        final String name;
+        final String source;
+        final String component;
+        final long bucketStart;
+        final String bucket;
+        final SegmentedOutput writer;
+        List<Triple> buffer = new ArrayList<>();
+        CompletableFuture<Void> written = CompletableFuture.completedFuture(null);
+
+        long lines;
+        long triples;
+        int firstLineId = Integer.MAX_VALUE;
+        int lastLineId = Integer.MIN_VALUE;
+        long firstTimestamp = Long.MAX_VALUE;
+        long lastTimestamp = Long.MIN_VALUE;
+
+        Shard(String source, String component, long bucketStart) {
+            this.source = source;
+            this.component = component;
+            this.bucketStart = bucketStart;
+            this.bucket = ShardedOutput.this.bucket.name(bucketStart);
+            this.name = source + "-" + EntityCache.sanitize(component) + "-" + bucket;
+            this.writer = new SegmentedOutput(shardPath(name), format, gzip, segmentTriples, segmentBytes, false);
+            for (String[] prefix : prefixes)
+                writer.prefix(prefix[0], prefix[1]);
+        }
+
+        void add(Marker marker) {
+            if (marker.continued)
+                return;
+            if (marker.lineId != NO_LINE) {
+                lines++;
+                firstLineId = Math.min(firstLineId, marker.lineId);
+                lastLineId = Math.max(lastLineId, marker.lineId);
+            }
+            if (marker.firstTimestamp != LogLineBatch.NO_TIMESTAMP) {
+                firstTimestamp = Math.min(firstTimestamp, marker.firstTimestamp);
+                lastTimestamp = Math.max(lastTimestamp, marker.lastTimestamp);
+            }
+        }
+    }
+
+    private final Path path;
+    private final EnumOutputFormat format;
+    private final boolean gzip;
+    private final long segmentTriples;
+    private final long segmentBytes;
+    private final EnumShardBucket bucket;
+    private final int writerThreads;
+    private final int maxOpenWriters;
+
+    private final List<String[]> prefixes = new ArrayList<>();
+    private final Map<String, Shard> shards = new HashMap<>();
+    private final Map<Shard, Boolean> openWriters = new LinkedHashMap<>(16, 0.75f, true); // by last flush
+    private ExecutorService writers;
+    private Semaphore buffersInFlight;
+    private Shard current; // shard of the latest marker
+    private long buffered;
+
+    /**
+     * @param path           output path, the shards are named after it
+     * @param format
+     * @param gzip
+     * @param segmentTriples triples per segment of a shard, 0 for no limit
+     * @param segmentBytes   bytes per segment of a shard, 0 for no limit
+     * @param bucket         time bucket of the shards
+     * @param writerThreads  shards written at the same time
+     * @param maxOpenWriters shards whose writer (file handle and buffers) is kept open
+     */
+    public ShardedOutput(Path path, EnumOutputFormat format, boolean gzip, long segmentTriples, long segmentBytes,
+                         EnumShardBucket bucket, int writerThreads, int maxOpenWriters) {
+        this.path = path;
+        this.format = format;
+        this.gzip = gzip;
+        this.segmentTriples = segmentTriples;
+        this.segmentBytes = segmentBytes;
+        this.bucket = bucket;
+        this.writerThreads = Math.max(1, writerThreads);
+        this.maxOpenWriters = Math.max(1, maxOpenWriters);
+    }
+
+    /**
+     * @param source    name of the log source
+     * @param component component of the line without brackets, e.g. sshd24200; the process id (trailing digits) is
+     *                  dropped
+     * @param lineId
+     * @param timestamp epoch seconds or LogLineBatch.NO_TIMESTAMP
+     * @return marker of the triples of a log line
+     */
+    public static Marker line(String source, String component, int lineId, long timestamp) {
+        int end = component.length();
+        while (end > 1 && Character.isDigit(component.charAt(end - 1)))
+            end--;
+        return new Marker(source, component.substring(0, end), lineId, timestamp, timestamp, false);
+    }
+
+    /**
+     * @param source
+     * @param firstTimestamp first line of the summary, decides its time bucket
+     * @param lastTimestamp
+     * @return marker of the triples of a LogSummary, summaries go to their own shards
+     */
+    public static Marker summary(String source, long firstTimestamp, long lastTimestamp) {
+        return new Marker(source, SUMMARIES, NO_LINE, firstTimestamp, lastTimestamp, false);
+    }
+
+    /**
+     * @return path of the manifest of the shards, next to the output path
+     */
+    public Path manifestPath() {
+        return path.resolveSibling(baseName() + "-manifest.csv");
+    }
+
+    private String baseName() {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    private Path shardPath(String shardName) {
+        return path.resolveSibling(baseName() + "-" + shardName + format.extension);
+    }
+
+    @Override
+    public void start() {
+        writers = Executors.newFixedThreadPool(writerThreads);
+        buffersInFlight = new Semaphore(4 * writerThreads);
+    }
+
+    @Override
+    public void triple(Triple triple) {
+        if (triple instanceof Marker) {
+            mark((Marker) triple);
+            return;
+        }
+        if (current == null)
+            throw new IllegalStateException("Triple without a shard marker: " + triple);
+
+        current.buffer.add(triple);
+        current.triples++;
+        buffered++;
+        if (current.buffer.size() >= BUFFER_TRIPLES) {
+            flush(current);
+        } else if (buffered >= MAX_BUFFERED_TRIPLES) {
+            for (Shard shard : shards.values())
+                flush(shard);
+        }
+    }
+
+    private void mark(Marker marker) {
+        // consecutive lines mostly go to the same shard
+        long bucketStart = bucket.start(marker.firstTimestamp);
+        if (current == null || current.bucketStart != bucketStart || !current.component.equals(marker.component)
+                || !current.source.equals(marker.source)) {
+            current = shards.computeIfAbsent(marker.shard(bucket), k -> new Shard(marker.source, marker.component, bucketStart));
+        }
+        current.add(marker);
+    }
+
+    /**
+     * Hand the buffer of a shard to a writer thread, after the buffers it got before
+     */
+    private void flush(Shard shard) {
+        if (shard.buffer.isEmpty())
+            return;
+        if (shard.written.isCompletedExceptionally())
+            shard.written.join(); // throws the error of the writer
+
+        List<Triple> triples = shard.buffer;
+        buffered -= triples.size();
+        shard.buffer = new ArrayList<>();
+        buffersInFlight.acquireUninterruptibly();
+        shard.written = shard.written
+                .thenRunAsync(() -> {
+                    for (Triple triple : triples)
+                        shard.writer.triple(triple);
+                }, writers)
+                .whenComplete((result, error) -> buffersInFlight.release());
+
+        openWriters.put(shard, Boolean.TRUE);
+        if (openWriters.size() > maxOpenWriters) {
+            Iterator<Shard> leastRecent = openWriters.keySet().iterator();
+            suspend(leastRecent.next());
+            leastRecent.remove();
+        }
+    }
+
+    /**
+     * Close the writer of a shard after the buffers it got so far, see SegmentedOutput.suspend
+     */
+    private void suspend(Shard shard) {
+        shard.written = shard.written.thenRunAsync(shard.writer::suspend, writers);
+    }
+
+    @Override
+    public void quad(Quad quad) {
+        triple(quad.asTriple());
+    }
+
+    @Override
+    public void base(String base) {
+    }
+
+    @Override
+    public void prefix(String prefix, String iri) {
+        prefixes.add(new String[]{prefix, iri});
+    }
+
+    @Override
+    public void finish() {
+        try {
+            List<CompletableFuture<Void>> finished = new ArrayList<>();
+            for (Shard shard : shards.values()) {
+                flush(shard);
+                finished.add(shard.written.thenRunAsync(shard.writer::finish, writers));
+            }
+            CompletableFuture.allOf(finished.toArray(new CompletableFuture[0])).join();
+        } finally {
+            writers.shutdown();
+        }
+
+        try {
+            writeManifest();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing shard manifest " + manifestPath(), e);
+        }
+        LOG.info("Wrote " + shards.size() + " shards, see " + manifestPath());
+    }
+
+    private void writeManifest() throws IOException {
+        List<Shard> sorted = new ArrayList<>(shards.values());
+        sorted.sort(Comparator.comparing((Shard shard) -> shard.name));
+
+        Path manifest = manifestPath();
+        if (manifest.toAbsolutePath().getParent() != null)
+            Files.createDirectories(manifest.toAbsolutePath().getParent());
+        try (Writer writer = Files.newBufferedWriter(manifest, StandardCharsets.UTF_8);
+             CSVPrinter printer = CSVFormat.DEFAULT.withHeader("Shard", "Source", "Component", "Bucket", "Files",
+                     "Lines", "FirstLineId", "LastLineId", "Triples", "FirstTimestamp", "LastTimestamp").print(writer)) {
+            for (Shard shard : sorted) {
+                boolean hasLines = shard.lines > 0;
+                boolean hasTime = shard.firstTimestamp != Long.MAX_VALUE;
+                printer.printRecord(shard.name, shard.source, shard.component, shard.bucket,
+                        shard.writer.segments().stream().map(file -> file.getFileName().toString()).collect(Collectors.joining(";")),
+                        shard.lines, hasLines ? shard.firstLineId : "", hasLines ? shard.lastLineId : "", shard.triples,
+                        hasTime ? TimestampParser.format(shard.firstTimestamp) : "",
+                        hasTime ? TimestampParser.format(shard.lastTimestamp) : "");
+            }
+        }
+    }
+}
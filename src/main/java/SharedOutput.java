@@ -0,0 +1,122 @@
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.sparql.core.Quad;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Single writer for the triples of several sources parsed concurrently.
+ * <p>
+ * Each source writes to its own output (see newSource), which hands the triples over in batches through a bounded
+ * queue. The calling thread of drain() is the only one writing to the real output, so sinks that are not thread
+ * safe or bound to a thread (the TDB2 write transactions) can be shared by all sources.
+ */
+public class SharedOutput {
+
+    // marks the end of a source in the queue
+    private static final List<Triple> END = new ArrayList<>();
+
+    private final StreamRDF output;
+    private final int batchTriples;
+    private final BlockingQueue<List<Triple>> batches;
+    private int openSources;
+
+    /**
+     * @param output        the real output, started and finished by the caller
+     * @param batchTriples  triples per batch handed over to the writer
+     * @param queueCapacity batches in flight, sources wait when the writer falls behind
+     */
+    public SharedOutput(StreamRDF output, int batchTriples, int queueCapacity) {
+        this.output = output;
+        this.batchTriples = batchTriples;
+        this.batches = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * @return output for one source, it has to be finished when the source is done (also if it failed)
+     */
+    public synchronized StreamRDF newSource() {
+        openSources++;
+        return new SourceOutput();
+    }
+
+    /**
+     * Write the batches of all sources to the output until every source is finished
+     *
+     * @throws InterruptedException
+     */
+    public void drain() throws InterruptedException {
+        int open;
+        synchronized (this) {
+            open = openSources;
+        }
+        while (open > 0) {
+            List<Triple> batch = batches.take();
+            if (batch == END) {
+                open--;
+                continue;
+            }
+            for (Triple triple : batch)
+                output.triple(triple);
+        }
+    }
+
+    /**
+     * Output of one source, collects the triples into batches for the writer
+     */
+    private class SourceOutput implements StreamRDF {
+        private List<Triple> batch = new ArrayList<>(batchTriples);
+        private ShardedOutput.Marker marker; // latest shard marker of the source
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void triple(Triple triple) {
+            // other sources write between the batches, so a batch starts with the shard of its first triples
+            if (triple instanceof ShardedOutput.Marker)
+                marker = (ShardedOutput.Marker) triple;
+            else if (batch.isEmpty() && marker != null)
+                batch.add(marker.continued());
+            batch.add(triple);
+            if (batch.size() >= batchTriples) {
+                put(batch);
+                batch = new ArrayList<>(batchTriples);
+            }
+        }
+
+        @Override
+        public void quad(Quad quad) {
+            triple(quad.asTriple());
+        }
+
+        @Override
+        public void base(String base) {
+        }
+
+        @Override
+        public void prefix(String prefix, String iri) {
+        }
+
+        @Override
+        public void finish() {
+            if (!batch.isEmpty())
+                put(batch);
+            batch = null;
+            put(END);
+        }
+
+        private void put(List<Triple> triples) {
+            try {
+                batches.put(triples);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while handing over triples", e);
+            }
+        }
+    }
+}
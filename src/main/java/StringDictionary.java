@@ -0,0 +1,77 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Dictionary of the repeating values of a column, shared by all batches of a run.
+ * <p>
+ * Lookups of known values are lock free, only new values are added under a lock. The dictionary is bounded:
+ * once it is full, unknown values are not encoded (-1) and have to be kept by the caller.
+ */
+public class StringDictionary {
+
+    public static final int NOT_ENCODED = -1;
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private final Function<String, String> transform;
+    private final int maxSize;
+
+    private volatile String[] values = new String[64];
+    private int size; // guarded by this
+
+    /**
+     * @param maxSize   maximum number of distinct values
+     * @param transform applied once per distinct value, decode returns the transformed value
+     */
+    public StringDictionary(int maxSize, Function<String, String> transform) {
+        this.maxSize = maxSize;
+        this.transform = transform;
+    }
+
+    public StringDictionary(int maxSize) {
+        this(maxSize, Function.identity());
+    }
+
+    /**
+     * @param value
+     * @return code of the value, or NOT_ENCODED if the dictionary is full
+     */
+    public int encode(String value) {
+        Integer code = codes.get(value);
+        return code != null ? code : add(value);
+    }
+
+    private synchronized int add(String value) {
+        Integer code = codes.get(value);
+        if (code != null)
+            return code;
+        if (size >= maxSize)
+            return NOT_ENCODED;
+
+        String[] current = values;
+        if (size == current.length)
+            current = Arrays.copyOf(current, Math.min(maxSize, current.length * 2));
+        current[size] = transform.apply(value);
+        values = current;
+        codes.put(value, size); // publishes the value to threads that look up the code
+        return size++;
+    }
+
+    public String decode(int code) {
+        return values[code];
+    }
+
+    /**
+     * Apply the transform of this dictionary to a value that could not be encoded
+     *
+     * @param value
+     * @return transformed value
+     */
+    public String transform(String value) {
+        return transform.apply(value);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,130 @@
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.tdb2.loader.DataLoader;
+import org.apache.jena.tdb2.loader.LoaderFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads the log KG directly into the default graph of an embedded TDB2 dataset, so it can be queried with SPARQL
+ * without writing and reloading a file. New triples are added to what earlier runs loaded.
+ * <p>
+ * With batchTriples = 0 the triples go through the TDB2 parallel bulk loader in a single transaction (fastest),
+ * otherwise they are added in write transactions of batchTriples triples, so the loaded part survives a crash.
+ * Must be used by a single thread (the pipeline writer), TDB2 transactions are bound to their thread. If the run
+ * fails, call abort instead of finish, so the dataset is not left in an open write transaction.
+ */
+public class TDB2Output implements StreamRDF {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TDB2Output.class);
+
+    private final DatasetGraph dataset;
+    private final long batchTriples;
+    private final List<String[]> prefixes = new ArrayList<>();
+
+    private DataLoader loader;
+    private StreamRDF loaderStream;
+    private Graph graph;
+    private long triplesInTransaction;
+
+    /**
+     * @param dataset      TDB2 dataset
+     * @param batchTriples triples per write transaction, 0 to use the bulk loader
+     */
+    public TDB2Output(DatasetGraph dataset, long batchTriples) {
+        this.dataset = dataset;
+        this.batchTriples = batchTriples;
+    }
+
+    @Override
+    public void start() {
+        if (batchTriples > 0) {
+            begin();
+        } else {
+            loader = LoaderFactory.parallelLoader(dataset, (format, args) -> LOG.info(String.format(format, args)));
+            loader.startBulk();
+            loaderStream = loader.stream();
+            loaderStream.start();
+            for (String[] prefix : prefixes)
+                loaderStream.prefix(prefix[0], prefix[1]);
+        }
+    }
+
+    private void begin() {
+        dataset.begin(ReadWrite.WRITE);
+        graph = dataset.getDefaultGraph();
+        for (String[] prefix : prefixes)
+            graph.getPrefixMapping().setNsPrefix(prefix[0], prefix[1]);
+        triplesInTransaction = 0;
+    }
+
+    @Override
+    public void triple(Triple triple) {
+        if (loaderStream != null) {
+            loaderStream.triple(triple);
+            return;
+        }
+
+        graph.add(triple);
+        if (++triplesInTransaction >= batchTriples) {
+            dataset.commit();
+            dataset.end();
+            begin();
+        }
+    }
+
+    @Override
+    public void quad(Quad quad) {
+        triple(quad.asTriple());
+    }
+
+    @Override
+    public void base(String base) {
+    }
+
+    @Override
+    public void prefix(String prefix, String iri) {
+        prefixes.add(new String[]{prefix, iri});
+        if (loaderStream != null)
+            loaderStream.prefix(prefix, iri);
+        else if (graph != null)
+            graph.getPrefixMapping().setNsPrefix(prefix, iri);
+    }
+
+    @Override
+    public void finish() {
+        if (loaderStream != null) {
+            loaderStream.finish();
+            loader.finishBulk();
+            loaderStream = null;
+        } else if (graph != null) {
+            dataset.commit();
+            dataset.end();
+            graph = null;
+        }
+    }
+
+    /**
+     * End the output after an error instead of finish: the open write transaction is rolled back (the batches
+     * committed before are kept), the bulk loader is ended with the error.
+     *
+     * @param error
+     */
+    public void abort(Throwable error) {
+        if (loaderStream != null) {
+            loaderStream = null;
+            loader.finishException(error instanceof Exception ? (Exception) error : new RuntimeException(error));
+        } else if (graph != null) {
+            graph = null;
+            dataset.abort();
+            dataset.end();
+        }
+    }
+}
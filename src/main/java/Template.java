@@ -1,4 +1,5 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -9,6 +10,9 @@ public class Template {
     public String TemplateId;
     public String TemplateContent;
     public List<EntityPattern> parameterDict;
+    public EntityPattern[] parameters; // parameterDict indexed by position, see indexParameters()
+    public TemplateExtractor extractor; // null if the lines are split by their ParameterList, see compileExtractor()
+    private volatile Boolean extractorVerified; // null until the extractor was compared with a ParameterList
     public String subject;
     public String hash;
 
@@ -16,5 +20,63 @@ public class Template {
         this.TemplateId = TemplateId;
         this.TemplateContent = TemplateContent;
         parameterDict = new ArrayList<>();
+        parameters = new EntityPattern[0];
+    }
+
+    /**
+     * Build the position-indexed parameter array from parameterDict
+     */
+    public void indexParameters() {
+        int size = 0;
+        for (EntityPattern parameter : parameterDict)
+            size = Math.max(size, parameter.position + 1);
+
+        parameters = new EntityPattern[size];
+        for (EntityPattern parameter : parameterDict) {
+            if (parameters[parameter.position] == null) // keep the first one, like the former linear lookup
+                parameters[parameter.position] = parameter;
+        }
+    }
+
+    /**
+     * Compile the extractor of the template content (after indexParameters). It is only used if it has as many
+     * parameters as were annotated, templates annotated from a ParameterList that split the content differently
+     * keep using the ParameterList.
+     */
+    public void compileExtractor() {
+        TemplateExtractor compiled = TemplateExtractor.compile(TemplateContent);
+        extractor = compiled != null && compiled.size() == parameters.length ? compiled : null;
+    }
+
+    /**
+     * Parameters of a log line of the template. They are sliced out of the content by the extractor if it agreed
+     * with the ParameterList of the first line compared, or if the data has no ParameterList column. Otherwise (and
+     * for lines that do not fit the template) the ParameterList is tokenized.
+     *
+     * @param content
+     * @param parameterList ParameterList column of the line, empty if the data has none
+     * @return ParameterList
+     */
+    public ParameterList parameters(String content, String parameterList) {
+        if (extractor != null && extractorVerified != Boolean.FALSE) {
+            ParameterList sliced = extractor.extract(content);
+            if (sliced != null) {
+                if (extractorVerified == Boolean.TRUE || parameterList.isEmpty())
+                    return sliced;
+
+                ParameterList listed = ParameterList.parse(parameterList);
+                extractorVerified = Arrays.equals(sliced.values(), listed.values());
+                return listed;
+            }
+        }
+        return ParameterList.parse(parameterList);
+    }
+
+    /**
+     * @param position
+     * @return the parameter pattern at the position, or null if there is none
+     */
+    public EntityPattern getParameter(int position) {
+        return position < parameters.length ? parameters[position] : null;
     }
 }
@@ -0,0 +1,177 @@
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+/**
+ * Compact binary catalog of the template registry, kept separately from the log KG.
+ * <p>
+ * The file starts with a header (magic number and version) followed by one record per template. New
+ * templates are appended to the end, so the catalog is updated incrementally and never rewritten.
+ * A record that was cut off (e.g. by a crash while appending), or whose lengths run past the end of the file, is
+ * dropped on load together with anything after it. Any other invalid record fails the load with its offset.
+ */
+public class TemplateCatalog {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TemplateCatalog.class);
+
+    private static final int MAGIC = 0x534c5043; // "SLPC"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 6;
+    private static final int PARAMETER_MIN_SIZE = 18; // position, type, three null strings and isObject
+
+    private final Path path;
+
+    public TemplateCatalog(Path path) {
+        this.path = path;
+    }
+
+    public boolean exists() {
+        return Files.exists(path);
+    }
+
+    /**
+     * Load all templates of the catalog into the registry
+     *
+     * @param templateRegistry
+     * @return number of loaded templates
+     * @throws IOException
+     */
+    public int load(TemplateRegistry templateRegistry) throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+        if (bytes.length < HEADER_SIZE || in.readInt() != MAGIC)
+            throw new IOException("Not a template catalog: " + path);
+        short version = in.readShort();
+        if (version != VERSION)
+            throw new IOException("Unsupported template catalog version " + version + ": " + path);
+
+        int count = 0;
+        int validLength = HEADER_SIZE;
+        try {
+            while (validLength < bytes.length) {
+                templateRegistry.add(readTemplate(in));
+                count++;
+                validLength = bytes.length - in.available();
+            }
+        } catch (EOFException e) {
+            LOG.warn("Dropping incomplete template record at offset " + validLength + " of " + path);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new IOException("Corrupt template record at offset " + validLength + " of " + path, e);
+        }
+        return count;
+    }
+
+    /**
+     * Append a template to the catalog, the catalog is created if it does not exist yet
+     *
+     * @param template
+     * @throws IOException
+     */
+    public void append(Template template) throws IOException {
+        append(Collections.singletonList(template));
+    }
+
+    /**
+     * Append templates to the catalog, the catalog is created if it does not exist yet
+     *
+     * @param templates
+     * @throws IOException
+     */
+    public void append(Collection<Template> templates) throws IOException {
+        boolean create = !exists();
+        if (create && path.getParent() != null)
+            Files.createDirectories(path.getParent());
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND)))) {
+            if (create) {
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+            }
+            for (Template template : templates)
+                writeTemplate(out, template);
+        }
+    }
+
+    private static void writeTemplate(DataOutputStream out, Template template) throws IOException {
+        writeString(out, template.hash);
+        writeString(out, template.TemplateContent);
+        writeString(out, template.subject);
+
+        out.writeInt(template.parameterDict.size());
+        for (EntityPattern parameter : template.parameterDict) {
+            out.writeInt(parameter.position);
+            out.writeByte(parameter.type == null ? -1 : parameter.type.ordinal());
+            writeString(out, parameter.className);
+            writeString(out, parameter.propertyName);
+            out.writeByte(parameter.isObject == null ? -1 : parameter.isObject ? 1 : 0);
+            writeString(out, parameter.pattern == null ? null : parameter.pattern.pattern());
+        }
+    }
+
+    private static Template readTemplate(DataInputStream in) throws IOException {
+        String hash = readString(in);
+        Template template = new Template(null, readString(in));
+        template.hash = hash;
+        template.subject = readString(in);
+
+        int parameterCount = in.readInt();
+        if (parameterCount < 0)
+            throw new IOException("Invalid parameter count " + parameterCount);
+        if (parameterCount > in.available() / PARAMETER_MIN_SIZE)
+            throw new EOFException();
+        for (int i = 0; i < parameterCount; i++) {
+            EntityPattern parameter = new EntityPattern();
+            parameter.position = in.readInt();
+            byte type = in.readByte();
+            if (type >= 0)
+                parameter.type = EnumPatternType.values()[type];
+            parameter.className = readString(in);
+            parameter.propertyName = readString(in);
+            byte isObject = in.readByte();
+            if (isObject >= 0)
+                parameter.isObject = isObject == 1;
+            String pattern = readString(in);
+            if (pattern != null)
+                parameter.pattern = Pattern.compile(pattern);
+            template.parameterDict.add(parameter);
+        }
+        return template;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == -1)
+            return null;
+        if (length < 0)
+            throw new IOException("Invalid string length " + length);
+        if (length > in.available())
+            throw new EOFException();
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
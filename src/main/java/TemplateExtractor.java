@@ -0,0 +1,88 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parameter extractor compiled from a template content such as "Invalid user &lt;*&gt; from &lt;*&gt;".
+ * <p>
+ * The template is cut into its literal segments ("Invalid user ", " from ", ""). The parameters of a line are the
+ * parts of its content between the segments: the content has to start with the first segment and end with the last
+ * one, every segment in between is found with indexOf from the end of the previous parameter. No regex is involved,
+ * and the parameters are slices of the content (see ParameterList.slices) without surrounding whitespace.
+ * <p>
+ * Lines that do not fit the template return null, the ParameterList column is the fallback then (see
+ * Template.parameters).
+ */
+public class TemplateExtractor {
+
+    private static final String WILDCARD = "<*>";
+
+    private final String[] segments; // literal segments, one more than parameters
+
+    private TemplateExtractor(String[] segments) {
+        this.segments = segments;
+    }
+
+    /**
+     * @param templateContent
+     * @return the extractor, or null if the template has adjacent parameters (&lt;*&gt;&lt;*&gt;) that cannot be
+     * told apart without the ParameterList
+     */
+    public static TemplateExtractor compile(String templateContent) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        int wildcard;
+        while ((wildcard = templateContent.indexOf(WILDCARD, start)) >= 0) {
+            String segment = templateContent.substring(start, wildcard);
+            if (segment.isEmpty() && !segments.isEmpty())
+                return null; // adjacent parameters
+            segments.add(segment);
+            start = wildcard + WILDCARD.length();
+        }
+        segments.add(templateContent.substring(start));
+        return new TemplateExtractor(segments.toArray(new String[0]));
+    }
+
+    /**
+     * @return number of parameters of the template
+     */
+    public int size() {
+        return segments.length - 1;
+    }
+
+    /**
+     * @param content content of a log line of the template
+     * @return the parameters as slices of the content, or null if the content does not fit the template
+     */
+    public ParameterList extract(String content) {
+        if (segments.length == 1)
+            return ParameterList.slices(content); // template without parameters
+
+        String first = segments[0];
+        String last = segments[segments.length - 1];
+        int end = content.length() - last.length();
+        if (end < first.length() || !content.startsWith(first) || !content.endsWith(last))
+            return null;
+
+        ParameterList parameters = ParameterList.slices(content);
+        int position = first.length();
+        for (int i = 1; i < segments.length - 1; i++) {
+            int next = content.indexOf(segments[i], position);
+            if (next < 0 || next > end - segments[i].length())
+                return null;
+            add(parameters, content, position, next);
+            position = next + segments[i].length();
+        }
+        if (position > end)
+            return null;
+        add(parameters, content, position, end);
+        return parameters;
+    }
+
+    private static void add(ParameterList parameters, String content, int start, int end) {
+        while (start < end && Character.isWhitespace(content.charAt(start)))
+            start++;
+        while (end > start && Character.isWhitespace(content.charAt(end - 1)))
+            end--;
+        parameters.add(start, end, false);
+    }
+}
@@ -0,0 +1,284 @@
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Online template miner for raw syslog lines (Drain: fixed-depth parse tree), so raw logs can be parsed without
+ * the structured CSVs of an external log parser.
+ * <p>
+ * (1) the header of a line (Month Day Time Host Component: Content) is split off, the content is split into tokens
+ * and tokens matching a mask (IPs, host names) are replaced by &lt;*&gt;;
+ * <p>
+ * (2) the tokens are routed through the tree by their count and their first (depth - 2) tokens, tokens with digits
+ * take the &lt;*&gt; branch;
+ * <p>
+ * (3) in the leaf the most similar cluster (share of equal tokens) takes the line if the similarity reaches the
+ * threshold, differing tokens of its template become &lt;*&gt;. If none does, the clusters of the other leaves with the
+ * same token count and first token are compared as well, since a parameter among the other routing tokens ("Invalid
+ * user admin from ...") sends each value to a leaf of its own; a cluster found that way is linked into the leaf.
+ * Otherwise the line starts a new cluster. Only the maxChildren most recently matched of these clusters are compared,
+ * so a line costs at most maxChildren comparisons more than in its leaf; a line whose cluster was not matched for a
+ * while (or whose first token is a parameter) starts a new cluster instead.
+ * <p>
+ * The EventId of a line is the id of its cluster, derived from the hash of the first template of the cluster, so
+ * the same log gets the same ids in every run. It stays the same while the template of the cluster is generalized
+ * (the EventTemplate of the line is the current template). Not thread safe, lines have to be mined in order by a
+ * single thread.
+ */
+public class TemplateMiner {
+
+    public static final String WILDCARD = "<*>";
+
+    private static final Pattern HEADER = Pattern.compile("^(\\w{3})\\s+(\\d{1,2})\\s+(\\d{2}:\\d{2}:\\d{2})\\s+(\\S+)\\s+([^:]+):\\s?(.*)$");
+
+    /**
+     * Group of lines with the same template
+     */
+    private static class Cluster {
+        final String eventId;
+        final String[] template;
+
+        Cluster(String eventId, String[] tokens) {
+            this.eventId = eventId;
+            template = tokens.clone();
+        }
+    }
+
+    /**
+     * Inner node of the parse tree, or a leaf with clusters
+     */
+    private static class TreeNode {
+        final Map<String, TreeNode> children = new HashMap<>();
+        final List<Cluster> clusters = new ArrayList<>();
+    }
+
+    private final Map<Integer, TreeNode> root = new HashMap<>();
+    private final int depth;
+    private final double similarityThreshold;
+    private final int maxChildren;
+    private final List<Pattern> masks;
+    // by token count and first routing token, the most recently matched clusters in access order
+    private final Map<String, LinkedHashMap<Cluster, Boolean>> recentClusters = new HashMap<>();
+    private final Set<String> eventIds = new HashSet<>();
+    private int lineId;
+
+    /**
+     * Miner with the settings used for OpenSSH logs (depth 5, similarity 0.6, masks for IPs and host names)
+     */
+    public TemplateMiner() {
+        this(5, 0.6, 100, Arrays.asList(Pattern.compile("(\\d+\\.){3}\\d+"), Pattern.compile("([\\w-]+\\.){2,}[\\w-]+")));
+    }
+
+    /**
+     * @param depth               depth of the parse tree including root and leaf, at least 3
+     * @param similarityThreshold share of equal tokens for a line to join a cluster
+     * @param maxChildren         children per tree node, further tokens share the &lt;*&gt; branch; also the number of
+     *                            recent clusters compared when the leaf has no similar cluster
+     * @param masks               patterns of values that are always parameters, applied to tokens containing a '.'
+     */
+    public TemplateMiner(int depth, double similarityThreshold, int maxChildren, List<Pattern> masks) {
+        this.depth = Math.max(3, depth);
+        this.similarityThreshold = similarityThreshold;
+        this.maxChildren = maxChildren;
+        this.masks = masks;
+    }
+
+    /**
+     * Mine a raw log line
+     *
+     * @param rawLine e.g. "Dec 10 06:55:46 LabSZ sshd[24200]: Failed password for root from 1.2.3.4 port 22 ssh2"
+     * @return the line with EventId, EventTemplate and ParameterList, or null if the line has no syslog header
+     */
+    public LogLine mine(String rawLine) {
+        Matcher header = HEADER.matcher(rawLine);
+        if (!header.matches())
+            return null;
+
+        String content = header.group(6);
+        String[] tokens = content.trim().isEmpty() ? new String[0] : content.trim().split("\\s+");
+        String[] masked = new String[tokens.length];
+        for (int i = 0; i < tokens.length; i++)
+            masked[i] = mask(tokens[i]);
+
+        Cluster cluster = match(masked);
+        String templateContent = String.join(" ", cluster.template);
+
+        lineId++;
+        return new LogLine(String.valueOf(lineId), header.group(1), header.group(2), header.group(3), header.group(4),
+                header.group(5), content, cluster.eventId, templateContent,
+                formatParameterList(parameters(cluster.template, tokens)));
+    }
+
+    /**
+     * @return number of templates found so far
+     */
+    public int size() {
+        return eventIds.size();
+    }
+
+    private String mask(String token) {
+        if (token.indexOf('.') < 0)
+            return token;
+        for (Pattern mask : masks)
+            token = mask.matcher(token).replaceAll(Matcher.quoteReplacement(WILDCARD));
+        return token;
+    }
+
+    /**
+     * Find the cluster of the tokens in the tree, or add a new one
+     */
+    private Cluster match(String[] tokens) {
+        TreeNode node = root.computeIfAbsent(tokens.length, length -> new TreeNode());
+        for (int level = 0; level < depth - 2 && level < tokens.length; level++) {
+            String key = routingKey(tokens[level]);
+            TreeNode child = node.children.get(key);
+            if (child == null) {
+                if (node.children.size() + 1 >= maxChildren && !key.equals(WILDCARD))
+                    key = WILDCARD; // node is full, the remaining tokens share the wildcard branch
+                child = node.children.computeIfAbsent(key, k -> new TreeNode());
+            }
+            node = child;
+        }
+
+        LinkedHashMap<Cluster, Boolean> recent = recentClusters.computeIfAbsent(
+                tokens.length + (tokens.length > 0 ? " " + routingKey(tokens[0]) : ""),
+                key -> new LinkedHashMap<Cluster, Boolean>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Cluster, Boolean> eldest) {
+                        return size() > maxChildren;
+                    }
+                });
+        Cluster best = mostSimilar(node.clusters, tokens);
+        if (best == null) {
+            best = mostSimilar(recent.keySet(), tokens);
+            if (best != null)
+                node.clusters.add(best); // the next lines of this leaf find it directly
+        }
+
+        if (best == null) {
+            best = new Cluster(newEventId(String.join(" ", tokens)), tokens);
+            node.clusters.add(best);
+            recent.put(best, Boolean.TRUE);
+            return best;
+        }
+
+        recent.put(best, Boolean.TRUE);
+
+        for (int i = 0; i < tokens.length; i++) {
+            if (!best.template[i].equals(tokens[i]))
+                best.template[i] = WILDCARD;
+        }
+        return best;
+    }
+
+    /**
+     * @return the cluster with the highest share of equal tokens (the most general one on ties), or null if none
+     * reaches the similarity threshold
+     */
+    private Cluster mostSimilar(Collection<Cluster> clusters, String[] tokens) {
+        Cluster best = null;
+        double bestSimilarity = -1;
+        int bestWildcards = -1;
+        for (Cluster cluster : clusters) {
+            int equal = 0;
+            int wildcards = 0;
+            for (int i = 0; i < tokens.length; i++) {
+                if (cluster.template[i].equals(WILDCARD))
+                    wildcards++;
+                else if (cluster.template[i].equals(tokens[i]))
+                    equal++;
+            }
+            double similarity = tokens.length == 0 ? 1 : (double) equal / tokens.length;
+            if (similarity > bestSimilarity || similarity == bestSimilarity && wildcards > bestWildcards) {
+                best = cluster;
+                bestSimilarity = similarity;
+                bestWildcards = wildcards;
+            }
+        }
+        return bestSimilarity >= similarityThreshold ? best : null;
+    }
+
+    /**
+     * @return the branch of a token in the parse tree, tokens with digits take the &lt;*&gt; branch
+     */
+    private static String routingKey(String token) {
+        return hasDigit(token) ? WILDCARD : token;
+    }
+
+    private static boolean hasDigit(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            if (Character.isDigit(token.charAt(i)))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Parameter values of the tokens: whole tokens at &lt;*&gt; positions, the variable part of tokens such as
+     * [&lt;*&gt;] or ssh&lt;*&gt;
+     */
+    private static List<String> parameters(String[] template, String[] tokens) {
+        List<String> parameters = new ArrayList<>();
+        for (int i = 0; i < template.length; i++) {
+            String part = template[i];
+            int wildcard = part.indexOf(WILDCARD);
+            if (wildcard < 0)
+                continue;
+
+            String token = tokens[i];
+            String prefix = part.substring(0, wildcard);
+            String suffix = part.substring(wildcard + WILDCARD.length());
+            if (suffix.contains(WILDCARD) || !token.startsWith(prefix) || !token.endsWith(suffix)
+                    || prefix.length() + suffix.length() > token.length())
+                parameters.add(token); // several variable parts in one token, take it as a whole
+            else
+                parameters.add(token.substring(prefix.length(), token.length() - suffix.length()));
+        }
+        return parameters;
+    }
+
+    /**
+     * @return the values in the python list representation of the ParameterList column
+     */
+    static String formatParameterList(List<String> values) {
+        StringBuilder list = new StringBuilder("[");
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0)
+                list.append(", ");
+            list.append('\'');
+            String value = values.get(i);
+            for (int c = 0; c < value.length(); c++) {
+                char ch = value.charAt(c);
+                if (ch == '\'' || ch == '\\')
+                    list.append('\\');
+                list.append(ch);
+            }
+            list.append('\'');
+        }
+        return list.append(']').toString();
+    }
+
+    /**
+     * @param templateContent first template of a new cluster
+     * @return EventId of the cluster: the first 4 bytes of the SHA-256 hash of the template in hex (like the 8 digit
+     * ids of the CSVs), rehashed with a counter if another cluster started with the same template
+     */
+    private String newEventId(String templateContent) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            String hashed = templateContent;
+            for (int counter = 1; ; counter++) {
+                byte[] hash = digest.digest(hashed.getBytes(StandardCharsets.UTF_8));
+                String eventId = String.format("%02x%02x%02x%02x", hash[0], hash[1], hash[2], hash[3]);
+                if (eventIds.add(eventId))
+                    return eventId;
+                hashed = templateContent + "#" + counter;
+            }
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
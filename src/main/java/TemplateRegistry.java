@@ -0,0 +1,66 @@
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of all known templates, indexed by template hash and by the EventIds (TemplateIds) of each log source
+ * of the current run. Sources have their own EventId namespaces, the same template content maps to the same
+ * hash and is annotated only once for all sources.
+ * <p>
+ * All maps are concurrent: lookups are lock free and may run on the pipeline workers of several sources while
+ * new templates are added.
+ */
+public class TemplateRegistry {
+
+    private final Map<String, Template> templatesByHash = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> hashesBySource = new ConcurrentHashMap<>();
+
+    /**
+     * Add a fully annotated template; its parameters are indexed by position and its extractor is compiled on the
+     * way in
+     *
+     * @param template
+     */
+    public void add(Template template) {
+        template.indexParameters();
+        template.compileExtractor();
+        templatesByHash.put(template.hash, template);
+    }
+
+    public boolean contains(String hash) {
+        return templatesByHash.containsKey(hash);
+    }
+
+    public Template getByHash(String hash) {
+        return templatesByHash.get(hash);
+    }
+
+    /**
+     * Store mapping from templateId to hash for a source in this run
+     *
+     * @param source
+     * @param eventId
+     * @param hash
+     */
+    public void mapEventId(String source, String eventId, String hash) {
+        hashesBySource.computeIfAbsent(source, name -> new ConcurrentHashMap<>()).put(eventId, hash);
+    }
+
+    public String getHash(String source, String eventId) {
+        Map<String, String> hashes = hashesBySource.get(source);
+        return hashes == null ? null : hashes.get(eventId);
+    }
+
+    public Template getByEventId(String source, String eventId) {
+        String hash = getHash(source, eventId);
+        return hash == null ? null : templatesByHash.get(hash);
+    }
+
+    public Collection<Template> templates() {
+        return templatesByHash.values();
+    }
+
+    public int size() {
+        return templatesByHash.size();
+    }
+}
@@ -0,0 +1,129 @@
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Allocation-free parser of the syslog timestamp columns (month name, day, HH:mm:ss) into epoch seconds.
+ * <p>
+ * Syslog timestamps carry no year, the current year is used (as before in Main.getDate). The epoch seconds are
+ * those of the local date and time read as UTC, so formatting them back yields the logged wall clock time.
+ */
+public class TimestampParser {
+
+    private static final String[] MONTHS = {"jan", "feb", "mar", "apr", "may", "jun", "jul", "aug", "sep", "oct", "nov", "dec"};
+
+    private static final long SECONDS_PER_DAY = 86400;
+
+    // epoch day of the first day of each month of the cached year, plus the first day of the next year
+    private volatile long[] monthStartDays;
+    private volatile long nextYearMillis;
+
+    public TimestampParser() {
+        updateYear();
+    }
+
+    private synchronized void updateYear() {
+        if (System.currentTimeMillis() < nextYearMillis)
+            return;
+
+        LocalDate today = LocalDate.now();
+        long[] startDays = new long[13];
+        for (int month = 0; month < 12; month++)
+            startDays[month] = LocalDate.of(today.getYear(), month + 1, 1).toEpochDay();
+        startDays[12] = LocalDate.of(today.getYear() + 1, 1, 1).toEpochDay();
+
+        monthStartDays = startDays;
+        nextYearMillis = LocalDate.of(today.getYear() + 1, 1, 1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * @param month e.g. "Dec"
+     * @param day   e.g. "10" or "1"
+     * @param time  e.g. "06:55:46"
+     * @return epoch seconds
+     * @throws ParseException if one of the values is malformed
+     */
+    public long parse(CharSequence month, CharSequence day, CharSequence time) throws ParseException {
+        if (System.currentTimeMillis() >= nextYearMillis)
+            updateYear();
+
+        long[] startDays = monthStartDays;
+        int monthIndex = parseMonth(month);
+        int dayOfMonth = parseNumber(day, 0, day.length());
+        if (dayOfMonth < 1 || dayOfMonth > startDays[monthIndex + 1] - startDays[monthIndex])
+            throw new ParseException("Invalid day: " + day, 0);
+
+        if (time.length() != 8 || time.charAt(2) != ':' || time.charAt(5) != ':')
+            throw new ParseException("Invalid time: " + time, 0);
+        int hours = parseNumber(time, 0, 2);
+        int minutes = parseNumber(time, 3, 5);
+        int seconds = parseNumber(time, 6, 8);
+        if (hours > 23 || minutes > 59 || seconds > 59)
+            throw new ParseException("Invalid time: " + time, 0);
+
+        long epochDay = startDays[monthIndex] + dayOfMonth - 1;
+        return epochDay * SECONDS_PER_DAY + hours * 3600 + minutes * 60 + seconds;
+    }
+
+    private static int parseMonth(CharSequence month) throws ParseException {
+        if (month.length() >= 3) {
+            for (int i = 0; i < MONTHS.length; i++) {
+                String name = MONTHS[i];
+                if (Character.toLowerCase(month.charAt(0)) == name.charAt(0)
+                        && Character.toLowerCase(month.charAt(1)) == name.charAt(1)
+                        && Character.toLowerCase(month.charAt(2)) == name.charAt(2))
+                    return i;
+            }
+        }
+        throw new ParseException("Invalid month: " + month, 0);
+    }
+
+    private static int parseNumber(CharSequence value, int start, int end) throws ParseException {
+        if (start >= end)
+            throw new ParseException("Missing number: " + value, start);
+
+        int number = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9')
+                throw new ParseException("Invalid number: " + value, i);
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+
+    /**
+     * Format epoch seconds as xsd:dateTime without time zone, e.g. 2019-12-10T06:55:46
+     *
+     * @param epochSeconds
+     * @return formatted timestamp
+     */
+    public static String format(long epochSeconds) {
+        long epochDay = Math.floorDiv(epochSeconds, SECONDS_PER_DAY);
+        int secondOfDay = (int) Math.floorMod(epochSeconds, SECONDS_PER_DAY);
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+
+        char[] chars = new char[19];
+        int year = date.getYear();
+        chars[0] = (char) ('0' + year / 1000 % 10);
+        chars[1] = (char) ('0' + year / 100 % 10);
+        chars[2] = (char) ('0' + year / 10 % 10);
+        chars[3] = (char) ('0' + year % 10);
+        chars[4] = '-';
+        twoDigits(chars, 5, date.getMonthValue());
+        chars[7] = '-';
+        twoDigits(chars, 8, date.getDayOfMonth());
+        chars[10] = 'T';
+        twoDigits(chars, 11, secondOfDay / 3600);
+        chars[13] = ':';
+        twoDigits(chars, 14, secondOfDay / 60 % 60);
+        chars[16] = ':';
+        twoDigits(chars, 17, secondOfDay % 60);
+        return new String(chars);
+    }
+
+    private static void twoDigits(char[] chars, int offset, int value) {
+        chars[offset] = (char) ('0' + value / 10);
+        chars[offset + 1] = (char) ('0' + value % 10);
+    }
+}
@@ -0,0 +1,85 @@
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.apache.jena.vocabulary.XSD;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Graph nodes of the log vocabulary, used to emit log KG triples without going through the OntModel.
+ * <p>
+ * Vocabulary terms are created once and shared, core() and parser() return the cached node.
+ */
+public class Vocabulary {
+
+    private static final ConcurrentHashMap<String, Node> coreTerms = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Node> parserTerms = new ConcurrentHashMap<>();
+
+    public static final Node TYPE = RDF.type.asNode();
+    public static final Node LABEL = RDFS.label.asNode();
+
+    public static final Node LOG_ENTRY = core("LogEntry");
+    public static final Node LOG_MESSAGE = core("logMessage");
+    public static final Node TIMESTAMP = core("timestamp");
+    public static final Node LEVEL = core("level");
+
+    public static final Node SOURCE = parser("Source");
+    public static final Node HAS_SOURCE = parser("hasSource");
+    public static final Node SEQUENCE = parser("sequence");
+    public static final Node TEMPLATE_ID = parser("templateId");
+
+    public static final Node LOG_SUMMARY = parser("LogSummary");
+    public static final Node COUNT = parser("count");
+    public static final Node FIRST_TIMESTAMP = parser("firstTimestamp");
+    public static final Node LAST_TIMESTAMP = parser("lastTimestamp");
+    public static final Node SAMPLE_LINE_ID = parser("sampleLineId");
+
+    public static Node core(String localName) {
+        Node term = coreTerms.get(localName);
+        return term != null ? term : coreTerms.computeIfAbsent(localName, name -> NodeFactory.createURI(Main.NS_CORE + name));
+    }
+
+    public static Node parser(String localName) {
+        Node term = parserTerms.get(localName);
+        return term != null ? term : parserTerms.computeIfAbsent(localName, name -> NodeFactory.createURI(Main.NS_PARSER + name));
+    }
+
+    public static Node instance(String localName) {
+        return NodeFactory.createURI(Main.NS_INSTANCE + localName);
+    }
+
+    public static Node literal(String value) {
+        return NodeFactory.createLiteral(value);
+    }
+
+    public static Node literal(int value) {
+        return NodeFactory.createLiteral(String.valueOf(value), XSDDatatype.XSDint);
+    }
+
+    public static Node literal(long value) {
+        return NodeFactory.createLiteral(String.valueOf(value), XSDDatatype.XSDlong);
+    }
+
+    public static Triple triple(Node subject, Node predicate, Node object) {
+        return Triple.create(subject, predicate, object);
+    }
+
+    /**
+     * Prefixes used when the log KG is serialized
+     *
+     * @return prefix to namespace pairs
+     */
+    public static String[][] prefixes() {
+        return new String[][]{
+                {"", Main.NS_CORE},
+                {"parser", Main.NS_PARSER},
+                {"id", Main.NS_INSTANCE},
+                {"rdf", RDF.getURI()},
+                {"rdfs", RDFS.getURI()},
+                {"xsd", XSD.getURI()}
+        };
+    }
+}
@@ -0,0 +1,217 @@
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+
+import java.util.*;
+
+/**
+ * Aggregation of the log lines of a source into summaries per time window: lines of the same template with the same
+ * entities (Host, User, ...) in the same window become one LogSummary with their count, first and last timestamp
+ * and a sample LineId.
+ * <p>
+ * The workers only prepare the lines: each line passes the pipeline in-band as a Line (like a ShardedOutput.Marker)
+ * with the triples of its LogEntry, and is aggregated in the writer stage (see output), in input order. So the
+ * summaries do not depend on the number of workers or their scheduling. A window is closed and its summaries are
+ * emitted once a line is a full window past its end; lines for a closed window are not added, they stay single log
+ * entries. flush() emits the windows still open at the end.
+ */
+public class WindowAggregator {
+
+    private static final Node LINE_NODE = NodeFactory.createBlankNode("aggregated");
+
+    /**
+     * A log line to aggregate, never written. Its LogEntry triples are written unless summaries replace them.
+     */
+    public static class Line extends Triple {
+        final String eventId;
+        final long timestamp;
+        final int lineId;
+        final List<Node> links;
+        final Collection<Triple> headers;
+        final Collection<Triple> entry;
+
+        private Line(String eventId, long timestamp, int lineId, List<Node> links, Collection<Triple> headers,
+                     Collection<Triple> entry) {
+            super(LINE_NODE, LINE_NODE, LINE_NODE);
+            this.eventId = eventId;
+            this.timestamp = timestamp;
+            this.lineId = lineId;
+            this.links = links;
+            this.headers = headers;
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * Lines of one template and entity tuple in one window
+     */
+    private static class Summary {
+        final String eventId;
+        final long windowStart;
+        final List<Node> links; // property and entity pairs
+        final Collection<Triple> headers; // types and labels of the entities, for the summary shards
+        long count;
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        int sampleLineId;
+
+        Summary(String eventId, long windowStart, List<Node> links, Collection<Triple> headers) {
+            this.eventId = eventId;
+            this.windowStart = windowStart;
+            this.links = links;
+            this.headers = headers;
+        }
+
+        void add(long timestamp, int lineId) {
+            count++;
+            // the sample is the earliest line, the lowest LineId among lines of the same timestamp
+            if (timestamp < first || timestamp == first && lineId < sampleLineId) {
+                first = timestamp;
+                sampleLineId = lineId;
+            }
+            last = Math.max(last, timestamp);
+        }
+    }
+
+    public final long windowSeconds;
+    public final boolean replacesLines; // summaries instead of the log entries of their lines
+    public final boolean marksShards; // summaries are preceded by their ShardedOutput marker
+
+    private final String source;
+    private final Map<String, Summary> summaries = new HashMap<>();
+    private long watermark = Long.MIN_VALUE; // start of the latest window seen
+    private long openFrom = Long.MIN_VALUE; // start of the first window that is still open
+
+    /**
+     * @param source        name of the log source
+     * @param windowSeconds
+     * @param replacesLines emit only the summaries, not the log entries of the lines
+     * @param marksShards   emit the shard marker of every summary, for the sharded output
+     */
+    public WindowAggregator(String source, long windowSeconds, boolean replacesLines, boolean marksShards) {
+        this.source = source;
+        this.windowSeconds = windowSeconds;
+        this.replacesLines = replacesLines;
+        this.marksShards = marksShards;
+    }
+
+    /**
+     * @param eventId
+     * @param timestamp epoch seconds, LogLineBatch.NO_TIMESTAMP if the line has none (it is not summarized then)
+     * @param lineId
+     * @param links     property and object pairs of the line, the entities (IRIs) among them make up the summary
+     * @param headers   type and label triples of the entities, emitted with the summary (its shard may not have
+     *                  them yet); null if the summaries do not mark shards
+     * @param entry     triples of the LogEntry of the line
+     * @return the line to emit to the pipeline output instead of its LogEntry
+     */
+    public static Line line(String eventId, long timestamp, int lineId, List<Node> links, Collection<Triple> headers,
+                            Collection<Triple> entry) {
+        return new Line(eventId, timestamp, lineId, links, headers, entry);
+    }
+
+    /**
+     * @param output
+     * @return the output for the pipeline: aggregates the Lines on the writer thread and passes all other triples on
+     */
+    public StreamRDF output(StreamRDF output) {
+        return new StreamRDFWrapper(output) {
+            @Override
+            public void triple(Triple triple) {
+                if (triple instanceof Line)
+                    write((Line) triple, output);
+                else
+                    output.triple(triple);
+            }
+        };
+    }
+
+    private void write(Line line, StreamRDF output) {
+        boolean summarized = line.timestamp != LogLineBatch.NO_TIMESTAMP
+                && add(line, output);
+        if (summarized && replacesLines)
+            return;
+        for (Triple triple : line.entry)
+            output.triple(triple);
+    }
+
+    /**
+     * Add a line to the summary of its window, windows that are closed by it are emitted to the output
+     *
+     * @return false if the window of the line is closed already, the line is not part of a summary then
+     */
+    private boolean add(Line line, StreamRDF output) {
+        long windowStart = Math.floorDiv(line.timestamp, windowSeconds) * windowSeconds;
+        if (windowStart < openFrom)
+            return false;
+
+        List<Node> entities = new ArrayList<>(line.links.size());
+        StringBuilder key = new StringBuilder(line.eventId).append('\u0000').append(windowStart);
+        for (int i = 0; i < line.links.size(); i += 2) {
+            if (line.links.get(i + 1).isURI()) {
+                entities.add(line.links.get(i));
+                entities.add(line.links.get(i + 1));
+                key.append('\u0000').append(line.links.get(i + 1).getURI());
+            }
+        }
+        summaries.computeIfAbsent(key.toString(), k -> new Summary(line.eventId, windowStart, entities, line.headers))
+                .add(line.timestamp, line.lineId);
+
+        if (windowStart > watermark) {
+            watermark = windowStart;
+            close(windowStart - windowSeconds, output); // one window of lateness for lines slightly out of order
+        }
+        return true;
+    }
+
+    /**
+     * Emit the summaries of all windows, at the end of the source
+     *
+     * @param output
+     */
+    public void flush(StreamRDF output) {
+        close(Long.MAX_VALUE, output);
+    }
+
+    /**
+     * Emit and remove the summaries of the windows before openFrom
+     */
+    private void close(long openFrom, StreamRDF output) {
+        if (openFrom <= this.openFrom)
+            return;
+        this.openFrom = openFrom;
+        for (Iterator<Summary> iterator = summaries.values().iterator(); iterator.hasNext(); ) {
+            Summary summary = iterator.next();
+            if (summary.windowStart < openFrom) {
+                emit(summary, output);
+                iterator.remove();
+            }
+        }
+    }
+
+    private void emit(Summary summary, StreamRDF output) {
+        StringBuilder name = new StringBuilder("Summary_").append(source).append('_').append(summary.eventId)
+                .append('_').append(TimestampParser.format(summary.windowStart));
+        for (int i = 1; i < summary.links.size(); i += 2)
+            name.append('_').append(summary.links.get(i).getURI().substring(Main.NS_INSTANCE.length()));
+        Node summaryInstance = Vocabulary.instance(name.toString());
+
+        if (marksShards)
+            output.triple(ShardedOutput.summary(source, summary.first, summary.last));
+        if (summary.headers != null) {
+            for (Triple header : summary.headers)
+                output.triple(header);
+        }
+
+        output.triple(Vocabulary.triple(summaryInstance, Vocabulary.TYPE, Vocabulary.LOG_SUMMARY));
+        output.triple(Vocabulary.triple(summaryInstance, Vocabulary.TEMPLATE_ID, Vocabulary.literal(summary.eventId)));
+        output.triple(Vocabulary.triple(summaryInstance, Vocabulary.COUNT, Vocabulary.literal(summary.count)));
+        output.triple(Vocabulary.triple(summaryInstance, Vocabulary.FIRST_TIMESTAMP, Vocabulary.literal(TimestampParser.format(summary.first))));
+        output.triple(Vocabulary.triple(summaryInstance, Vocabulary.LAST_TIMESTAMP, Vocabulary.literal(TimestampParser.format(summary.last))));
+        output.triple(Vocabulary.triple(summaryInstance, Vocabulary.SAMPLE_LINE_ID, Vocabulary.literal(summary.sampleLineId)));
+        for (int i = 0; i < summary.links.size(); i += 2)
+            output.triple(Vocabulary.triple(summaryInstance, summary.links.get(i), summary.links.get(i + 1)));
+    }
+}
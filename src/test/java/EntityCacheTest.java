@@ -0,0 +1,34 @@
+import org.apache.jena.graph.Node;
+import org.apache.jena.riot.lang.CollectorStreamTriples;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EntityCacheTest {
+
+    @Test
+    public void headerIsEmittedOncePerScope() {
+        EntityCache cache = new EntityCache(1000);
+        CollectorStreamTriples output = new CollectorStreamTriples();
+        Node first = cache.resolve("Host", "173.234.31.186", "sshd-06", output);
+        assertEquals(2, output.getCollected().size());
+        assertTrue(output.getCollected().contains(Vocabulary.triple(first, Vocabulary.LABEL, Vocabulary.literal("173.234.31.186"))));
+
+        assertEquals(first, cache.resolve("Host", "173.234.31.186", "sshd-06", output));
+        assertEquals(2, output.getCollected().size());
+
+        // another shard needs the type and label as well
+        assertEquals(first, cache.resolve("Host", "173.234.31.186", "sshd-07", output));
+        assertEquals(4, output.getCollected().size());
+    }
+
+    @Test
+    public void unscopedHeaderIsEmittedOnce() {
+        EntityCache cache = new EntityCache(1000);
+        CollectorStreamTriples output = new CollectorStreamTriples();
+        Node entity = cache.resolve("User", "root", output);
+        assertEquals(Vocabulary.instance("User_root"), entity);
+        cache.resolve("User", "root", output);
+        assertEquals(2, output.getCollected().size());
+    }
+}
@@ -0,0 +1,125 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class EntityIndexTest {
+
+    private static final String HOST = "http://w3id.org/sepses/id/Host_173_234_31_186";
+    private static final String USER = "http://w3id.org/sepses/id/User_root";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path path() {
+        return folder.getRoot().toPath().resolve("log_KG.idx");
+    }
+
+    private static List<String> lookup(Path path, String entity) throws IOException {
+        try (EntityIndex index = new EntityIndex(path)) {
+            List<String> lines = new ArrayList<>();
+            for (EntityIndex.Posting posting : index.lookup(entity))
+                lines.add(posting.source + " " + posting.lineId + " " + posting.timestamp);
+            return lines;
+        }
+    }
+
+    @Test
+    public void postingsRoundTripSortedBySourceAndLineId() throws IOException {
+        EntityIndexBuilder builder = new EntityIndexBuilder(path());
+        // out of order, timestamps going back (negative zigzag deltas), a repeated line, a line without timestamp
+        builder.add(HOST, "OpenSSH_2k_A", 300, 1576000300L);
+        builder.add(HOST, "OpenSSH_2k_B", 7, 1575000000L);
+        builder.add(HOST, "OpenSSH_2k_A", 2, 1576000002L);
+        builder.add(HOST, "OpenSSH_2k_A", 300, 1576000300L);
+        builder.add(HOST, "OpenSSH_2k_A", 70000, LogLineBatch.NO_TIMESTAMP);
+        builder.add(USER, "OpenSSH_2k_B", 1, 0);
+        assertEquals(2, builder.write());
+
+        assertEquals(EntityIndex.segmentPath(path(), 1), builder.segmentPath());
+        assertEquals(Arrays.asList("OpenSSH_2k_A 2 1576000002", "OpenSSH_2k_A 300 1576000300",
+                "OpenSSH_2k_A 70000 " + LogLineBatch.NO_TIMESTAMP, "OpenSSH_2k_B 7 1575000000"), lookup(path(), HOST));
+        assertEquals(Collections.singletonList("OpenSSH_2k_B 1 0"), lookup(path(), USER));
+        assertTrue(lookup(path(), "http://w3id.org/sepses/id/Host_10_0_0_1").isEmpty());
+        try (EntityIndex index = new EntityIndex(path())) {
+            assertEquals(2, index.size());
+            assertEquals(1, index.lookup("User", "root").size());
+        }
+    }
+
+    @Test
+    public void spilledPostingsAreMerged() throws IOException {
+        Random random = new Random(3);
+        Map<String, TreeMap<Integer, Long>> expected = new TreeMap<>();
+        EntityIndexBuilder builder = new EntityIndexBuilder(path(), 4096); // spills every few hundred postings
+        for (int lineId = 1; lineId <= 5000; lineId++) {
+            String entity = "http://w3id.org/sepses/id/Host_" + random.nextInt(200);
+            long timestamp = 1576000000L + random.nextInt(100_000) - 50_000;
+            builder.add(entity, "OpenSSH", lineId, timestamp);
+            expected.computeIfAbsent(entity, key -> new TreeMap<>()).put(lineId, timestamp);
+        }
+        assertEquals(expected.size(), builder.write());
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            assertEquals(1, files.count()); // the spilled files are removed
+        }
+
+        for (Map.Entry<String, TreeMap<Integer, Long>> entity : expected.entrySet()) {
+            List<String> lines = new ArrayList<>();
+            entity.getValue().forEach((lineId, timestamp) -> lines.add("OpenSSH " + lineId + " " + timestamp));
+            assertEquals(lines, lookup(path(), entity.getKey()));
+        }
+    }
+
+    @Test
+    public void linesAreSortedWithTheirTimestamps() {
+        Random random = new Random(5);
+        int count = 10_000;
+        long[] lines = new long[count];
+        long[] timestamps = new long[count];
+        for (int i = 0; i < count; i++) {
+            lines[i] = (long) random.nextInt(3) << 32 | random.nextInt(5000); // repeats of a line have its timestamp
+            timestamps[i] = lines[i] * 7;
+        }
+        long[] expected = lines.clone();
+        Arrays.sort(expected);
+
+        EntityIndexBuilder.sort(lines, timestamps, count);
+        assertArrayEquals(expected, lines);
+        for (int i = 0; i < count; i++)
+            assertEquals(lines[i] * 7, timestamps[i]);
+    }
+
+    @Test
+    public void runsAddSegments() throws IOException {
+        EntityIndexBuilder first = new EntityIndexBuilder(path());
+        first.add(HOST, "OpenSSH_2k_A", 1, 10);
+        first.write();
+        EntityIndexBuilder second = new EntityIndexBuilder(path());
+        second.add(HOST, "OpenSSH_2k_B", 5, 20);
+        second.add(HOST, "OpenSSH_2k_A", 1, 10); // the same line indexed again
+        second.add(USER, "OpenSSH_2k_B", 6, 30);
+        second.write();
+
+        assertEquals(EntityIndex.segmentPath(path(), 2), second.segmentPath());
+        assertEquals(Arrays.asList("OpenSSH_2k_A 1 10", "OpenSSH_2k_B 5 20"), lookup(path(), HOST));
+        assertEquals(Collections.singletonList("OpenSSH_2k_B 6 30"), lookup(path(), USER));
+    }
+
+    @Test(expected = IOException.class)
+    public void missingIndexIsRejected() throws IOException {
+        new EntityIndex(path()).close();
+    }
+
+    @Test(expected = IOException.class)
+    public void otherFilesAreRejected() throws IOException {
+        Files.write(EntityIndex.segmentPath(path(), 1), new byte[100]);
+        new EntityIndex(path()).close();
+    }
+}
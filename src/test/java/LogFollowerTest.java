@@ -0,0 +1,160 @@
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class LogFollowerTest {
+
+    private static final String HEADER = "LineId,Content,EventId\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path data;
+    private Path checkpoint;
+    private Path output;
+    private final List<String> handled = new ArrayList<>(); // LineIds in the order they were handed over
+
+    @Before
+    public void setUp() throws IOException {
+        data = folder.getRoot().toPath().resolve("OpenSSH.log_structured.csv");
+        checkpoint = folder.getRoot().toPath().resolve("follow.checkpoint");
+        output = folder.getRoot().toPath().resolve("follow.nt");
+    }
+
+    private void append(Path file, String text) throws IOException {
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Follow the data until nothing new was read for a while, the handler writes a line per record to the output
+     */
+    private void follow() throws Exception {
+        LogFollower follower = new LogFollower(data, checkpoint, output, 10, 1 << 16);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                follower.run((file, records) -> {
+                    for (CSVRecord record : records) {
+                        handled.add(record.get("LineId"));
+                        append(output, record.get("LineId") + " " + record.get("Content") + "\n");
+                    }
+                });
+            } catch (Throwable e) {
+                error.set(e);
+            }
+        });
+        thread.start();
+        Thread.sleep(300);
+        thread.interrupt();
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+        assertNull("the follower did not stop cleanly", error.get());
+    }
+
+    private Properties checkpoint() throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(checkpoint, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return properties;
+    }
+
+    @Test
+    public void incompleteLastRecordWaitsForItsLineBreak() throws Exception {
+        append(data, HEADER + "1,Invalid user a,E1\n2,Invalid user b,E1\n3,Invalid us");
+        follow();
+        assertEquals(Arrays.asList("1", "2"), handled);
+        assertEquals(String.valueOf((HEADER + "1,Invalid user a,E1\n2,Invalid user b,E1\n").length()),
+                checkpoint().getProperty(data.toAbsolutePath().normalize() + ".offset"));
+
+        append(data, "er c,E1\n");
+        follow();
+        assertEquals(Arrays.asList("1", "2", "3"), handled);
+    }
+
+    @Test
+    public void quotedLineBreaksDoNotEndARecord() throws Exception {
+        append(data, HEADER + "1,\"first\nsecond\",E1\n2,\"open\n");
+        follow();
+        assertEquals(Arrays.asList("1"), handled);
+
+        append(data, "still open\",E2\n");
+        follow();
+        assertEquals(Arrays.asList("1", "2"), handled);
+    }
+
+    @Test
+    public void restartResumesAtTheCheckpoint() throws Exception {
+        append(data, HEADER + "1,Invalid user a,E1\n2,Invalid user b,E1\n");
+        follow();
+        append(data, "3,Invalid user c,E1\n");
+        follow();
+        assertEquals(Arrays.asList("1", "2", "3"), handled);
+        assertEquals("1 Invalid user a\n2 Invalid user b\n3 Invalid user c\n",
+                new String(Files.readAllBytes(output), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void outputAfterTheCheckpointIsCutOnRestart() throws Exception {
+        append(data, HEADER + "1,Invalid user a,E1\n");
+        follow();
+        // a chunk was written, but the process died before its checkpoint
+        append(output, "2 Invalid user b\n");
+        follow();
+        assertEquals("1 Invalid user a\n", new String(Files.readAllBytes(output), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void truncatedDataIsReadAgainFromTheStart() throws Exception {
+        append(data, HEADER + "1,Invalid user a,E1\n2,Invalid user b,E1\n");
+        follow();
+        // log rotation: the file starts over with fewer bytes than were read
+        Files.write(data, (HEADER + "1,Accepted\n").getBytes(StandardCharsets.UTF_8));
+        follow();
+        assertEquals(Arrays.asList("1", "2", "1"), handled);
+    }
+
+    @Test
+    public void replacedDataIsReadAgainFromTheStart() throws Exception {
+        append(data, HEADER + "1,Invalid user a,E1\n2,Invalid user b,E1\n");
+        follow();
+        // log rotation: another file with the same start, already larger than the offset, is moved to the path
+        Path rotated = folder.getRoot().toPath().resolve("rotated.csv");
+        append(rotated, HEADER + "1,Invalid user a,E1\n2,Invalid user b,E1\n3,Invalid user c,E1\n");
+        Files.move(rotated, data, StandardCopyOption.REPLACE_EXISTING);
+        follow();
+        assertEquals(Arrays.asList("1", "2", "1", "2", "3"), handled);
+    }
+
+    @Test
+    public void rewrittenDataIsReadAgainFromTheStart() throws Exception {
+        append(data, HEADER + "1,Invalid user a,E1\n2,Invalid user b,E1\n");
+        follow();
+        // the same file rewritten with other records, already larger than the offset
+        Files.write(data, (HEADER + "1,Accepted password for root,E2\n2,Accepted password for b,E2\n3,x,E3\n")
+                .getBytes(StandardCharsets.UTF_8));
+        follow();
+        assertEquals(Arrays.asList("1", "2", "1", "2", "3"), handled);
+
+        append(data, "4,Invalid user d,E1\n"); // appending goes on at the new offset
+        follow();
+        assertEquals(Arrays.asList("1", "2", "1", "2", "3", "4"), handled);
+    }
+}
@@ -0,0 +1,152 @@
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MappedCsvReaderTest {
+
+    private static final String HEADER = "LineId,Month,Date,Time,Type,Component,Content,EventId,EventTemplate,ParameterList\n";
+    private static final int FIELDS = 10;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Structured log lines of varying length, some with quoted fields, escaped quotes and non-ASCII characters
+     */
+    private static String lines(int count) {
+        Random random = new Random(7);
+        StringBuilder csv = new StringBuilder(HEADER);
+        for (int lineId = 1; lineId <= count; lineId++) {
+            StringBuilder user = new StringBuilder();
+            for (int i = random.nextInt(40); i >= 0; i--)
+                user.append((char) ('a' + random.nextInt(26)));
+            if (lineId % 7 == 0)
+                user.append("\u00fc\u20ac");
+            String content = "Invalid user " + user + " from 10.0." + random.nextInt(256) + "." + random.nextInt(256);
+            String parameterList = "['" + user + "', '10.0.0.1']";
+            if (lineId % 5 == 0)
+                content = "say \"\"" + content + "\"\", ok";
+            csv.append(lineId).append(",Dec,10,06:55:46,LabSZ,sshd[").append(24200 + lineId).append("],")
+                    .append(lineId % 5 == 0 ? "\"" + content + "\"" : content)
+                    .append(",E1,Invalid user <*> from <*>,\"").append(parameterList).append('"')
+                    .append(lineId % 11 == 0 ? "\r\n" : "\n");
+        }
+        return csv.toString();
+    }
+
+    private Path write(String csv) throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, csv.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static List<List<String>> decode(Iterable<MappedCsvReader.Row> rows) {
+        List<List<String>> decoded = new ArrayList<>();
+        String[] fields = new String[FIELDS];
+        for (MappedCsvReader.Row row : rows) {
+            int count = row.decode(fields);
+            List<String> record = new ArrayList<>();
+            for (int i = 0; i < count; i++)
+                record.add(fields[i]);
+            decoded.add(record);
+        }
+        return decoded;
+    }
+
+    private static List<List<String>> expected(String csv) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        for (CSVRecord record : CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(new StringReader(csv))) {
+            List<String> fields = new ArrayList<>();
+            record.forEach(fields::add);
+            records.add(fields);
+        }
+        return records;
+    }
+
+    @Test
+    public void decodesLikeCommonsCsv() throws IOException {
+        String csv = lines(500);
+        try (MappedCsvReader reader = new MappedCsvReader(write(csv))) {
+            assertEquals(expected(csv), decode(reader.rows()));
+        }
+    }
+
+    @Test
+    public void recordsCrossingRegionsAreMappedAgain() throws IOException {
+        String csv = lines(500);
+        Path file = write(csv);
+        List<List<String>> expected = expected(csv);
+        for (int maxRegion : new int[]{256, 333, 1000, 4096}) {
+            try (MappedCsvReader reader = new MappedCsvReader(file, maxRegion)) {
+                assertEquals("region of " + maxRegion + " bytes", expected, decode(reader.rows()));
+            }
+        }
+    }
+
+    @Test
+    public void quotedLineBreaksStayInTheRecord() throws IOException {
+        String csv = HEADER + "1,Dec,10,06:55:46,LabSZ,sshd[1],\"first\nsecond\",E1,<*>,\"['x']\"\n"
+                + "\n"
+                + "2,Dec,10,06:55:47,LabSZ,sshd[2],third,E2,<*>,\"['y']\"";
+        try (MappedCsvReader reader = new MappedCsvReader(write(csv), 64)) {
+            List<List<String>> rows = decode(reader.rows());
+            assertEquals(2, rows.size());
+            assertEquals("first\nsecond", rows.get(0).get(6));
+            assertEquals("['y']", rows.get(1).get(9));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void recordLargerThanARegionFails() throws IOException {
+        try (MappedCsvReader reader = new MappedCsvReader(write(lines(20)), 64)) {
+            decode(reader.rows());
+        }
+    }
+
+    @Test
+    public void splitCoversEveryRecordOnce() throws IOException {
+        String csv = lines(1000);
+        Path file = write(csv);
+        List<List<String>> expected = expected(csv);
+        for (int parts : new int[]{1, 2, 3, 7, 64}) {
+            try (MappedCsvReader reader = new MappedCsvReader(file, 1024)) {
+                List<long[]> ranges = reader.split(parts);
+                assertTrue(ranges.size() <= parts);
+                assertEquals(HEADER.length(), ranges.get(0)[0]);
+                assertEquals(reader.size(), ranges.get(ranges.size() - 1)[1]);
+
+                List<List<String>> rows = new ArrayList<>();
+                for (int i = 0; i < ranges.size(); i++) {
+                    if (i > 0)
+                        assertEquals("ranges are contiguous", ranges.get(i - 1)[1], ranges.get(i)[0]);
+                    rows.addAll(decode(reader.rows(ranges.get(i)[0], ranges.get(i)[1])));
+                }
+                assertEquals(parts + " parts", expected, rows);
+            }
+        }
+    }
+
+    @Test
+    public void splitOfASmallFileHasFewerParts() throws IOException {
+        try (MappedCsvReader reader = new MappedCsvReader(write(lines(2)))) {
+            assertEquals(2, reader.split(16).size());
+        }
+        try (MappedCsvReader reader = new MappedCsvReader(write(HEADER))) {
+            assertTrue(reader.split(4).isEmpty());
+            assertFalse(reader.rows().iterator().hasNext());
+        }
+    }
+}
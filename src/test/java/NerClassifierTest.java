@@ -0,0 +1,96 @@
+import edu.stanford.nlp.util.Triple;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class NerClassifierTest {
+
+    /**
+     * Classifier with fixed entities instead of the CRF model, recording the texts it was run on
+     */
+    private static class StubClassifier extends NerClassifier {
+        final List<String> texts = new ArrayList<>();
+
+        StubClassifier(int maxCachedValues) {
+            super("missing/model.crf.ser.gz", maxCachedValues, null);
+        }
+
+        @Override
+        List<Triple<String, Integer, Integer>> entities(String text) {
+            texts.add(text);
+            List<Triple<String, Integer, Integer>> entities = new ArrayList<>();
+            for (String[] entity : new String[][]{{"Alice", "PERSON"}, {"Vienna", "LOCATION"}, {"ACME", "ORGANIZATION"}}) {
+                int start = text.indexOf(entity[0]);
+                if (start >= 0)
+                    entities.add(new Triple<>(entity[1], start, start + entity[0].length()));
+            }
+            return entities;
+        }
+    }
+
+    private static final EntityPattern HOST = new EntityPattern("Host", "connectedHost", true, Pattern.compile(Main.regexHost),
+            EnumPatternType.Parameter);
+
+    @Test
+    public void labelsAreMappedToEntityPatterns() throws Exception {
+        StubClassifier ner = new StubClassifier(100);
+        String content = "Login of Alice from Vienna at ACME via 10.0.0.1 session xyz";
+        String[] values = {"Alice", "Vienna", "ACME", "10.0.0.1", "xyz"};
+        EntityPattern[] entities = ner.classify(content, values, new EntityPattern[]{null, null, null, HOST, null});
+
+        assertEquals("Person", entities[0].className);
+        assertEquals("connectedPerson", entities[0].propertyName);
+        assertEquals(EnumPatternType.NamedEntity, entities[0].type);
+        assertEquals("Location", entities[1].className);
+        assertEquals("Organization", entities[2].className);
+        assertNull(entities[3]); // matched by a pattern, not classified
+        assertNull(entities[4]);
+        assertEquals(1, ner.texts.size());
+        assertEquals(content, ner.texts.get(0)); // the values occur in the content, it is classified as a whole
+    }
+
+    @Test
+    public void cachedValuesAreNotClassifiedAgain() throws Exception {
+        StubClassifier ner = new StubClassifier(100);
+        ner.classify("user Alice", new String[]{"Alice"}, new EntityPattern[1]);
+        EntityPattern[] entities = ner.classify("other Alice", new String[]{"Alice"}, new EntityPattern[1]);
+        assertEquals("Person", entities[0].className);
+        assertEquals(1, ner.texts.size());
+    }
+
+    @Test
+    public void cacheIsBounded() throws Exception {
+        StubClassifier ner = new StubClassifier(2);
+        for (String value : new String[]{"Alice", "Vienna", "ACME"})
+            ner.classify(value, new String[]{value}, new EntityPattern[1]);
+        assertEquals(2, ner.size());
+
+        // Alice was evicted, the others are still cached
+        ner.classify("ACME", new String[]{"ACME"}, new EntityPattern[1]);
+        assertEquals(3, ner.texts.size());
+        EntityPattern[] entities = ner.classify("Alice", new String[]{"Alice"}, new EntityPattern[1]);
+        assertEquals("Person", entities[0].className);
+        assertEquals(4, ner.texts.size());
+    }
+
+    @Test
+    public void modelIsOnlyLoadedForValuesWithLetters() throws Exception {
+        NerClassifier ner = new NerClassifier("missing/model.crf.ser.gz", null);
+        // matched values and values without letters are never classified, the missing model is not loaded
+        EntityPattern[] entities = ner.classify("from 10.0.0.1 port 22", new String[]{"10.0.0.1", "22"},
+                new EntityPattern[]{HOST, null});
+        assertNull(entities[1]);
+        assertEquals(1, ner.size());
+
+        try {
+            ner.classify("user Alice", new String[]{"Alice"}, new EntityPattern[1]);
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("missing/model.crf.ser.gz"));
+        }
+    }
+}
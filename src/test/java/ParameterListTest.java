@@ -0,0 +1,56 @@
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ParameterListTest {
+
+    @Test
+    public void parsesQuotedValues() {
+        ParameterList list = ParameterList.parse("['ns.marryaldkfaczcz.com', '173.234.31.186']");
+        assertEquals(2, list.size());
+        assertArrayEquals(new String[]{"ns.marryaldkfaczcz.com", "173.234.31.186"}, list.values());
+        assertEquals("173.234.31.186", list.view(1).toString());
+    }
+
+    @Test
+    public void quotedValuesMayContainCommasAndBrackets() {
+        assertArrayEquals(new String[]{"a, b", "[preauth]", ""},
+                ParameterList.parse("['a, b', '[preauth]', '']").values());
+    }
+
+    @Test
+    public void resolvesEscapes() {
+        ParameterList list = ParameterList.parse("['it\\'s', \"it's\", 'back\\\\slash', 'tab\\there', '\\x41']");
+        assertArrayEquals(new String[]{"it's", "it's", "back\\slash", "tab\there", "A"}, list.values());
+        // the view keeps the raw text
+        assertEquals("it\\'s", list.view(0).toString());
+    }
+
+    @Test
+    public void unquotedValuesAreTrimmed() {
+        assertArrayEquals(new String[]{"22", "None", "x"}, ParameterList.parse("[22, None ,  x]").values());
+    }
+
+    @Test
+    public void emptyOrMalformedListsHaveNoValues() {
+        assertTrue(ParameterList.parse("").isEmpty());
+        assertTrue(ParameterList.parse("[]").isEmpty());
+        assertTrue(ParameterList.parse("  [ ]  ").isEmpty());
+        assertTrue(ParameterList.parse("'a', 'b'").isEmpty());
+        assertTrue(ParameterList.parse("['a', 'b'").isEmpty());
+    }
+
+    @Test
+    public void unterminatedQuoteEndsAtTheList() {
+        assertArrayEquals(new String[]{"a", "b"}, ParameterList.parse("['a', 'b]").values());
+    }
+
+    @Test
+    public void formattedListsParseBack() {
+        String[] values = {"root", "it's", "say \"hi\"", "back\\slash", "a, b", ""};
+        String formatted = TemplateMiner.formatParameterList(Arrays.asList(values));
+        assertArrayEquals(values, ParameterList.parse(formatted).values());
+    }
+}
@@ -0,0 +1,88 @@
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.lang.CollectorStreamTriples;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ParsePipelineTest {
+
+    private static final LogLineBatch.Dictionaries DICTIONARIES = new LogLineBatch.Dictionaries();
+
+    private static LogLine line(int lineId) {
+        return new LogLine(String.valueOf(lineId), "Dec", "10", "06:55:46", "LabSZ", "sshd[24200]",
+                "Invalid user test from 1.2.3.4", "E1", "Invalid user <*> from <*>", "");
+    }
+
+    /**
+     * Records that throw the given error after count lines
+     */
+    private static Iterable<LogLine> failingAfter(int count, Error error) {
+        return () -> new Iterator<LogLine>() {
+            int next = 1;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public LogLine next() {
+                if (next > count)
+                    throw error;
+                return line(next++);
+            }
+        };
+    }
+
+    private static ParsePipeline.LineProcessor lineIds() {
+        return (batch, row, output) -> output.triple(Triple.create(Vocabulary.instance("Logline_" + batch.lineId(row)),
+                Vocabulary.SEQUENCE, Vocabulary.literal(String.valueOf(batch.lineId(row)))));
+    }
+
+    @Test
+    public void writesLinesInInputOrder() {
+        List<LogLine> lines = new ArrayList<>();
+        for (int lineId = 1; lineId <= 2500; lineId++)
+            lines.add(line(lineId));
+
+        CollectorStreamTriples output = new CollectorStreamTriples();
+        new ParsePipeline(4, 100, 8, new ParserMetrics())
+                .run(lines, batch -> LogLineBatch.fromLogLines(batch, "test", DICTIONARIES), lineIds(), output);
+
+        List<Triple> triples = new ArrayList<>(output.getCollected());
+        assertEquals(2500, triples.size());
+        for (int i = 0; i < triples.size(); i++)
+            assertEquals(String.valueOf(i + 1), triples.get(i).getObject().getLiteralLexicalForm());
+    }
+
+    @Test(timeout = 10_000)
+    public void errorOfTheRecordsStopsTheWriter() {
+        StackOverflowError error = new StackOverflowError("csv parser");
+        try {
+            new ParsePipeline(2, 10, 4, new ParserMetrics())
+                    .run(failingAfter(55, error), batch -> LogLineBatch.fromLogLines(batch, "test", DICTIONARIES),
+                            lineIds(), new CollectorStreamTriples());
+            fail("the error of the records is not passed on");
+        } catch (RuntimeException e) {
+            assertSame(error, e.getCause());
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void errorOfTheDecoderStopsTheWriter() {
+        OutOfMemoryError error = new OutOfMemoryError("decoder");
+        try {
+            new ParsePipeline(2, 10, 4, new ParserMetrics())
+                    .run(failingAfter(1000, new AssertionError("not reached")), batch -> {
+                        throw error;
+                    }, lineIds(), new CollectorStreamTriples());
+            fail("the error of the decoder is not passed on");
+        } catch (RuntimeException e) {
+            assertSame(error, e.getCause());
+        }
+    }
+}
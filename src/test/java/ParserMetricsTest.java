@@ -0,0 +1,42 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ParserMetricsTest {
+
+    @Test
+    public void templateStatsAreKeptPerSource() {
+        ParserMetrics metrics = new ParserMetrics();
+        metrics.line("OpenSSH_2k_A", "E27", 2, 0);
+        metrics.line("OpenSSH_2k_A", "E27", 2, 1);
+        metrics.line("OpenSSH_2k_B", "E27", 4, 4);
+        metrics.line("OpenSSH_2k_B", null, 1, 1);
+
+        assertEquals(4, metrics.getLines());
+        assertEquals(Long.valueOf(2), metrics.getTemplateHits().get("OpenSSH_2k_A/E27"));
+        assertEquals(Long.valueOf(1), metrics.getTemplateHits().get("OpenSSH_2k_B/E27"));
+        assertEquals(2, metrics.getTemplateHits().size());
+        assertEquals(0.25, metrics.getTemplateUnmatchedRates().get("OpenSSH_2k_A/E27"), 1e-9);
+        assertEquals(1.0, metrics.getTemplateUnmatchedRates().get("OpenSSH_2k_B/E27"), 1e-9);
+    }
+
+    @Test
+    public void summaryWhileTemplatesAreAdded() throws Exception {
+        ParserMetrics metrics = new ParserMetrics();
+        metrics.line("OpenSSH_2k_A", "E27", 2, 1);
+        Thread parser = new Thread(() -> {
+            for (int eventId = 0; eventId < 20_000 && !Thread.currentThread().isInterrupted(); eventId++) {
+                metrics.line("OpenSSH_2k_B", "E" + eventId, 1, 0);
+                metrics.patternAttempt("Class" + eventId % 1000, System.nanoTime(), true);
+            }
+        });
+        parser.start();
+        try {
+            for (int i = 0; i < 50; i++)
+                assertTrue(metrics.getSummary().contains("template OpenSSH_2k_A/E27: 1 lines, 50.0% unmatched"));
+        } finally {
+            parser.interrupt();
+            parser.join();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class PatternSetTest {
+
+    private static final EntityPattern HOST = new EntityPattern("Host", "connectedHost", true,
+            Pattern.compile(Main.regexHost), EnumPatternType.Parameter, "#.");
+    private static final EntityPattern USER = new EntityPattern("User", "connectedUser", true,
+            Pattern.compile(Main.regexUser), EnumPatternType.LogLine, "user", "usr", "uid");
+    private static final EntityPattern PORT = new EntityPattern("Port", "port", false,
+            Pattern.compile(Main.regexPort), EnumPatternType.LogLine, "port");
+
+    private final PatternSet patterns = new PatternSet(Arrays.asList(HOST, USER, PORT));
+
+    @Test
+    public void parameterPatternsMatchTheValue() {
+        EntityPattern[] found = patterns.classify("Failed password for root from 173.234.31.186 port 38926 ssh2",
+                new String[]{"root", "173.234.31.186", "38926"});
+        assertNull(found[0]);
+        assertSame(HOST, found[1]);
+        assertSame(PORT, found[2]);
+    }
+
+    @Test
+    public void logLinePatternsContainTheValue() {
+        EntityPattern[] found = patterns.classify("Invalid user webmaster from 173.234.31.186",
+                new String[]{"webmaster", "173.234.31.186"});
+        assertSame(USER, found[0]);
+        assertSame(HOST, found[1]);
+    }
+
+    @Test
+    public void firstPatternInOrderWins() {
+        // "22" is in the match of the User pattern as well, User comes before Port
+        EntityPattern[] found = patterns.classify("user 22 from port 22", new String[]{"22"});
+        assertSame(USER, found[0]);
+    }
+
+    @Test
+    public void onlyTheFirstMatchOfALogLinePatternCounts() {
+        EntityPattern[] found = patterns.classify("port 22 forwarded to port 8080", new String[]{"22", "8080"});
+        assertSame(PORT, found[0]);
+        assertNull(found[1]);
+    }
+
+    @Test
+    public void valuesAreContainedAsWholeTokens() {
+        // "2" is not part of "port 52121", ssh2 of "Failed password ... ssh2" is no parameter of the Port pattern
+        EntityPattern[] found = patterns.classify("Failed password for root from 5.36.59.76 port 42393 ssh2",
+                new String[]{"root", "5.36.59.76", "42393", "2"});
+        assertSame(PORT, found[2]);
+        assertNull(found[3]);
+
+        found = patterns.classify("Accepted password for user:admin", new String[]{"admin", "min"});
+        assertSame(USER, found[0]);
+        assertNull(found[1]);
+    }
+
+    @Test
+    public void prefilterSkipsPatternsWithoutTheirLiterals() {
+        ParserMetrics metrics = new ParserMetrics();
+        EntityPattern[] found = new PatternSet(Arrays.asList(HOST, USER, PORT), metrics)
+                .classify("Received disconnect from 10.0.0.1: 11: Bye Bye", new String[]{"10.0.0.1", "11"});
+        assertSame(HOST, found[0]);
+        assertNull(found[1]);
+        // neither "user" nor "port" occurs, only Host was run
+        assertEquals(Collections.singleton("Host"), metrics.getPatternMatchMicros().keySet());
+    }
+}
@@ -0,0 +1,157 @@
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.RDFDataMgr;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SegmentedOutputTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Triple triple(int lineId) {
+        Node line = Vocabulary.instance("Logline_" + lineId);
+        return Vocabulary.triple(line, Vocabulary.LOG_MESSAGE, Vocabulary.literal("Failed password for root from 173.234.31.186 port " + lineId));
+    }
+
+    private static void write(SegmentedOutput output, int from, int to) {
+        for (int lineId = from; lineId <= to; lineId++)
+            output.triple(triple(lineId));
+    }
+
+    private static long triples(Path file) {
+        return RDFDataMgr.loadGraph(file.toString()).size();
+    }
+
+    private Path path(EnumOutputFormat format) {
+        return folder.getRoot().toPath().resolve("log_KG" + format.extension);
+    }
+
+    @Test
+    public void rotatesByTriples() {
+        SegmentedOutput output = new SegmentedOutput(path(EnumOutputFormat.NTriples), EnumOutputFormat.NTriples, false, 10, 0, false);
+        output.start();
+        write(output, 1, 25);
+        output.finish();
+
+        List<Path> segments = output.segments();
+        assertEquals(3, segments.size());
+        assertEquals(folder.getRoot().toPath().resolve("log_KG-00001.nt"), segments.get(0));
+        assertEquals(10, triples(segments.get(0)));
+        assertEquals(10, triples(segments.get(1)));
+        assertEquals(5, triples(segments.get(2)));
+    }
+
+    @Test
+    public void fullLastSegmentIsNotFollowedByAnEmptyOne() {
+        SegmentedOutput output = new SegmentedOutput(path(EnumOutputFormat.NTriples), EnumOutputFormat.NTriples, false, 10, 0, false);
+        output.start();
+        write(output, 1, 20);
+        output.finish();
+
+        assertEquals(2, output.segments().size());
+        assertFalse(Files.exists(folder.getRoot().toPath().resolve("log_KG-00003.nt")));
+    }
+
+    @Test
+    public void rotatesByBytes() throws Exception {
+        long maxBytes = 256 << 10;
+        SegmentedOutput output = new SegmentedOutput(path(EnumOutputFormat.NTriples), EnumOutputFormat.NTriples, false, 0, maxBytes, false);
+        output.start();
+        write(output, 1, 20_000);
+        output.finish();
+
+        List<Path> segments = output.segments();
+        assertTrue(segments.size() > 1);
+        long triples = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            long size = Files.size(segments.get(i));
+            if (i < segments.size() - 1)
+                assertTrue(size + " bytes", size >= maxBytes && size < 2 * maxBytes);
+            else
+                assertTrue(size + " bytes", size < 2 * maxBytes);
+            triples += triples(segments.get(i));
+        }
+        assertEquals(20_000, triples);
+    }
+
+    @Test
+    public void gzipSegmentsAreReadable() {
+        for (EnumOutputFormat format : EnumOutputFormat.values()) {
+            SegmentedOutput output = new SegmentedOutput(path(format), format, true, 100, 0, false);
+            output.prefix("sepses", Main.NS_INSTANCE);
+            output.start();
+            write(output, 1, 250);
+            output.finish();
+
+            List<Path> segments = output.segments();
+            assertEquals(3, segments.size());
+            assertTrue(segments.get(0).toString().endsWith("-00001" + format.extension + ".gz"));
+            assertEquals(format.toString(), 100, triples(segments.get(0)));
+            assertEquals(format.toString(), 50, triples(segments.get(2)));
+        }
+    }
+
+    @Test
+    public void suspendedFileIsAppendedTo() {
+        for (EnumOutputFormat format : EnumOutputFormat.values()) {
+            for (boolean gzip : new boolean[]{false, true}) {
+                Path path = folder.getRoot().toPath().resolve(gzip + "/log_KG" + format.extension);
+                SegmentedOutput output = new SegmentedOutput(path, format, gzip, 0, 0, false);
+                output.prefix("sepses", Main.NS_INSTANCE);
+                output.start();
+                write(output, 1, 5);
+                output.suspend();
+                output.suspend();
+                write(output, 6, 10);
+                output.suspend();
+                write(output, 11, 12);
+                output.finish();
+
+                assertEquals(1, output.segments().size());
+                assertEquals(format + " " + gzip, 12, triples(output.segments().get(0)));
+            }
+        }
+    }
+
+    @Test
+    public void suspendedSegmentKeepsItsCounts() {
+        SegmentedOutput output = new SegmentedOutput(path(EnumOutputFormat.NTriples), EnumOutputFormat.NTriples, false, 4, 0, false);
+        output.start();
+        write(output, 1, 6);
+        output.suspend();
+        write(output, 7, 9);
+        output.finish();
+
+        List<Path> segments = output.segments();
+        assertEquals(3, segments.size());
+        assertEquals(4, triples(segments.get(0)));
+        assertEquals(4, triples(segments.get(1)));
+        assertEquals(1, triples(segments.get(2)));
+    }
+
+    @Test
+    public void appendsToAnExistingFile() {
+        Path path = path(EnumOutputFormat.Turtle);
+        for (int run = 0; run < 2; run++) {
+            SegmentedOutput output = new SegmentedOutput(path, EnumOutputFormat.Turtle, false, 0, 0, true);
+            output.prefix("sepses", Main.NS_INSTANCE);
+            output.start();
+            write(output, 10 * run + 1, 10 * run + 10);
+            output.finish();
+        }
+        assertEquals(20, triples(path));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void segmentedOutputCannotBeAppendedTo() {
+        new SegmentedOutput(path(EnumOutputFormat.NTriples), EnumOutputFormat.NTriples, false, 10, 0, true);
+    }
+}
@@ -0,0 +1,82 @@
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.riot.RDFDataMgr;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ShardedOutputTest {
+
+    private static final String[] COMPONENTS = {"sshd", "cron", "kernel"};
+    private static final int LINES = 12_000; // per component, more than a buffer so the shards are flushed in turns
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Lines of the components in turns, one writer open at a time
+     */
+    private Path writeInTurns(EnumOutputFormat format, boolean gzip, long segmentTriples) {
+        Path path = folder.getRoot().toPath().resolve("log_KG" + format.extension);
+        ShardedOutput output = new ShardedOutput(path, format, gzip, segmentTriples, 0, EnumShardBucket.Day, 2, 1);
+        output.prefix("sepses", Main.NS_INSTANCE);
+        output.start();
+        for (int lineId = 1; lineId <= LINES; lineId++) {
+            for (String component : COMPONENTS) {
+                output.triple(ShardedOutput.line("OpenSSH", component + lineId, lineId, 1576000000L));
+                Node line = Vocabulary.instance("Logline_" + lineId + "_" + component);
+                output.triple(Vocabulary.triple(line, Vocabulary.SEQUENCE, Vocabulary.literal(lineId)));
+            }
+        }
+        output.finish();
+        return path;
+    }
+
+    private static long triples(List<Path> files) {
+        long triples = 0;
+        for (Path file : files) {
+            Graph graph = RDFDataMgr.loadGraph(file.toString());
+            triples += graph.size();
+        }
+        return triples;
+    }
+
+    @Test
+    public void suspendedShardsAreAppendedTo() throws Exception {
+        for (EnumOutputFormat format : EnumOutputFormat.values()) {
+            for (boolean gzip : new boolean[]{false, true}) {
+                folder.delete();
+                folder.create();
+                writeInTurns(format, gzip, 0);
+                for (String component : COMPONENTS) {
+                    Path shard = folder.getRoot().toPath().resolve("log_KG-OpenSSH-" + component + "-2019-12-10"
+                            + format.extension + (gzip ? ".gz" : ""));
+                    assertTrue(shard.toString(), Files.exists(shard));
+                    assertEquals(format + " " + gzip, LINES, triples(Collections.singletonList(shard)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void suspendedSegmentsAreContinued() throws Exception {
+        writeInTurns(EnumOutputFormat.NTriples, false, 7000); // the second segment is suspended after 3000 triples
+        for (String component : COMPONENTS) {
+            List<Path> segments = new ArrayList<>();
+            for (int segment = 1; segment <= 2; segment++)
+                segments.add(folder.getRoot().toPath().resolve(String.format("log_KG-OpenSSH-%s-2019-12-10-%05d.nt", component, segment)));
+            for (Path segment : segments)
+                assertTrue(segment.toString(), Files.exists(segment));
+            assertFalse(Files.exists(folder.getRoot().toPath().resolve(String.format("log_KG-OpenSSH-%s-2019-12-10-00003.nt", component))));
+            assertEquals(LINES, triples(segments));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.ontology.OntModelSpec;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.TDB2Factory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+public class TDB2OutputTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DatasetGraph store;
+
+    @Before
+    public void connect() {
+        store = TDB2Factory.connectDataset(folder.getRoot().getPath()).asDatasetGraph();
+    }
+
+    @After
+    public void close() {
+        store.close();
+    }
+
+    private static Triple triple(int lineId) {
+        Node line = Vocabulary.instance("Logline_" + lineId);
+        return Vocabulary.triple(line, Vocabulary.SEQUENCE, Vocabulary.literal(lineId));
+    }
+
+    /**
+     * Triples of the default graph, read on another thread so the write transaction of the output is not in the way
+     */
+    private long committedTriples() throws Exception {
+        return CompletableFuture.supplyAsync(() -> Txn.calculateRead(store, () -> (long) store.getDefaultGraph().size())).get();
+    }
+
+    @Test
+    public void batchesAreCommitted() throws Exception {
+        TDB2Output output = new TDB2Output(store, 2);
+        output.prefix("sepses", Main.NS_INSTANCE);
+        output.start();
+        for (int lineId = 1; lineId <= 5; lineId++)
+            output.triple(triple(lineId));
+        assertEquals(4, committedTriples());
+        output.finish();
+        assertEquals(5, committedTriples());
+        assertFalse(store.isInTransaction());
+        assertEquals(Main.NS_INSTANCE, Txn.calculateRead(store, () -> store.getDefaultGraph().getPrefixMapping().getNsPrefixURI("sepses")));
+    }
+
+    @Test
+    public void abortRollsBackTheOpenBatch() throws Exception {
+        TDB2Output output = new TDB2Output(store, 2);
+        output.start();
+        for (int lineId = 1; lineId <= 5; lineId++)
+            output.triple(triple(lineId));
+        output.abort(new IOException("parse error"));
+        assertFalse(store.isInTransaction());
+        assertEquals(4, committedTriples());
+        Txn.executeWrite(store, () -> store.getDefaultGraph().add(triple(6)));
+        assertEquals(5, committedTriples());
+    }
+
+    @Test
+    public void bulkLoaderLoadsAllTriples() throws Exception {
+        TDB2Output output = new TDB2Output(store, 0);
+        output.start();
+        for (int lineId = 1; lineId <= 1000; lineId++)
+            output.triple(triple(lineId));
+        output.finish();
+        assertEquals(1000, committedTriples());
+    }
+
+    @Test
+    public void abortEndsTheBulkLoader() throws Exception {
+        TDB2Output output = new TDB2Output(store, 0);
+        output.start();
+        for (int lineId = 1; lineId <= 1000; lineId++)
+            output.triple(triple(lineId));
+        output.abort(new IOException("parse error"));
+        assertFalse(store.isInTransaction());
+        Txn.executeWrite(store, () -> store.getDefaultGraph().add(triple(1001)));
+        assertTrue(Txn.calculateRead(store, () -> store.getDefaultGraph().contains(triple(1001))));
+    }
+
+    @Test
+    public void storeTemplatesHaveNoLogEntries() throws Exception {
+        OntModel dataModel = ModelFactory.createOntologyModel(OntModelSpec.OWL_DL_MEM);
+        try (InputStream in = Main.class.getClassLoader().getResourceAsStream("parser.ttl")) {
+            RDFDataMgr.read(dataModel, in, Lang.TURTLE);
+        }
+        Node logEntry = Vocabulary.LOG_ENTRY;
+        Node template = Vocabulary.parser("ExtractedTemplate");
+        int templates = dataModel.getGraph().find(Node.ANY, Vocabulary.TYPE, template).toList().size();
+        assertTrue(dataModel.getGraph().contains(Node.ANY, Vocabulary.TYPE, logEntry));
+        assertTrue(templates > 0);
+
+        Main.saveStoreTemplates(store, dataModel);
+        Txn.executeRead(store, () -> {
+            Graph stored = store.getGraph(Main.TEMPLATE_GRAPH);
+            assertFalse(stored.contains(Node.ANY, Vocabulary.TYPE, logEntry));
+            assertEquals(templates, stored.find(Node.ANY, Vocabulary.TYPE, template).toList().size());
+            for (Triple hasParameter : stored.find(Node.ANY, Vocabulary.parser("hasParameter"), Node.ANY).toList())
+                assertTrue(stored.contains(hasParameter.getObject(), Vocabulary.parser("position"), Node.ANY));
+        });
+    }
+}
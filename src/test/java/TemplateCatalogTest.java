@@ -0,0 +1,144 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class TemplateCatalogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Template template(String hash, String content) {
+        Template template = new Template(null, content);
+        template.hash = hash;
+        template.subject = Main.NS_INSTANCE + "Template_" + hash;
+        EntityPattern user = new EntityPattern("User", "connectedUser", true, Pattern.compile(Main.regexUser),
+                EnumPatternType.LogLine);
+        user.position = 0;
+        template.parameterDict.add(user);
+        EntityPattern unknown = new EntityPattern();
+        unknown.position = 1;
+        template.parameterDict.add(unknown);
+        return template;
+    }
+
+    @Test
+    public void appendedTemplatesAreLoaded() throws IOException {
+        TemplateCatalog catalog = new TemplateCatalog(folder.getRoot().toPath().resolve("catalog/templates.catalog"));
+        assertFalse(catalog.exists());
+        catalog.append(template("a1", "Invalid user <*> from <*>"));
+        catalog.append(Arrays.asList(template("b2", "Failed password for <*> from <*>"),
+                template("c3", "Accepted password for <*> from <*>")));
+
+        TemplateRegistry registry = new TemplateRegistry();
+        assertEquals(3, catalog.load(registry));
+        Template loaded = registry.getByHash("a1");
+        assertEquals("Invalid user <*> from <*>", loaded.TemplateContent);
+        assertEquals(Main.NS_INSTANCE + "Template_a1", loaded.subject);
+        assertEquals(2, loaded.parameters.length);
+        assertEquals("User", loaded.getParameter(0).className);
+        assertEquals(EnumPatternType.LogLine, loaded.getParameter(0).type);
+        assertTrue(loaded.getParameter(0).isObject);
+        assertEquals(Main.regexUser, loaded.getParameter(0).pattern.pattern());
+        assertNull(loaded.getParameter(1).type);
+        assertNull(loaded.getParameter(1).pattern);
+        assertNotNull(registry.getByHash("c3"));
+    }
+
+    @Test
+    public void incompleteRecordIsDroppedAndTruncated() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("templates.catalog");
+        TemplateCatalog catalog = new TemplateCatalog(path);
+        catalog.append(template("a1", "Invalid user <*> from <*>"));
+        long complete = Files.size(path);
+        catalog.append(template("b2", "Failed password for <*> from <*>"));
+
+        // cut the second record, e.g. by a crash while appending
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(path) - 7);
+        }
+
+        TemplateRegistry registry = new TemplateRegistry();
+        assertEquals(1, catalog.load(registry));
+        assertNotNull(registry.getByHash("a1"));
+        assertNull(registry.getByHash("b2"));
+        assertEquals(complete, Files.size(path));
+
+        // appending goes on after the last complete record
+        catalog.append(template("b2", "Failed password for <*> from <*>"));
+        registry = new TemplateRegistry();
+        assertEquals(2, catalog.load(registry));
+        assertEquals("Failed password for <*> from <*>", registry.getByHash("b2").TemplateContent);
+    }
+
+    /**
+     * Three records, the int at the given offset of the second one overwritten
+     *
+     * @return offset of the second record
+     */
+    private long corruptSecondRecord(Path path, int offset, int value) throws IOException {
+        TemplateCatalog catalog = new TemplateCatalog(path);
+        catalog.append(template("a1", "Invalid user <*> from <*>"));
+        long second = Files.size(path);
+        catalog.append(template("b2", "Failed password for <*> from <*>"));
+        catalog.append(template("c3", "Accepted password for <*> from <*>"));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, value), second + offset);
+        }
+        return second;
+    }
+
+    @Test
+    public void corruptRecordIsRejectedWithItsOffset() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("templates.catalog");
+        long second = corruptSecondRecord(path, 0, -5); // length of the hash
+        long size = Files.size(path);
+        try {
+            new TemplateCatalog(path).load(new TemplateRegistry());
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("offset " + second));
+            assertEquals("Invalid string length -5", e.getCause().getMessage());
+        }
+        assertEquals(size, Files.size(path)); // nothing is dropped
+
+        // a negative parameter count, after the three strings of the record
+        Files.delete(path);
+        int strings = 4 + "b2".length() + 4 + "Failed password for <*> from <*>".length() + 4 + (Main.NS_INSTANCE + "Template_b2").length();
+        second = corruptSecondRecord(path, strings, -1);
+        try {
+            new TemplateCatalog(path).load(new TemplateRegistry());
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("offset " + second));
+            assertEquals("Invalid parameter count -1", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void lengthPastTheEndIsDroppedLikeAnIncompleteRecord() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("templates.catalog");
+        long second = corruptSecondRecord(path, 4 + 2, Integer.MAX_VALUE); // length of the content
+        TemplateRegistry registry = new TemplateRegistry();
+        assertEquals(1, new TemplateCatalog(path).load(registry));
+        assertNotNull(registry.getByHash("a1"));
+        assertEquals(second, Files.size(path));
+    }
+
+    @Test(expected = IOException.class)
+    public void otherFilesAreRejected() throws IOException {
+        Path path = folder.newFile("parser.ttl").toPath();
+        Files.write(path, "@prefix : <http://w3id.org/sepses/vocab/log/core#> .".getBytes());
+        new TemplateCatalog(path).load(new TemplateRegistry());
+    }
+}
@@ -0,0 +1,92 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TemplateExtractorTest {
+
+    private static String[] extract(String template, String content) {
+        ParameterList parameters = TemplateExtractor.compile(template).extract(content);
+        return parameters == null ? null : parameters.values();
+    }
+
+    @Test
+    public void slicesTheParametersBetweenTheLiterals() {
+        assertArrayEquals(new String[]{"root", "5.36.59.76", "42393", "2"},
+                extract("Failed password for <*> from <*> port <*> ssh<*>",
+                        "Failed password for root from 5.36.59.76 port 42393 ssh2"));
+        assertArrayEquals(new String[]{"173.234.31.186"},
+                extract("Connection closed by <*> [preauth]", "Connection closed by 173.234.31.186 [preauth]"));
+    }
+
+    @Test
+    public void parametersAtTheStartAndEnd() {
+        assertArrayEquals(new String[]{"5", "Failed password for root"},
+                extract("message repeated <*> times: [ <*>]", "message repeated 5 times: [ Failed password for root]"));
+        assertArrayEquals(new String[]{"sshd", "24200"}, extract("<*>[<*>]", "sshd[24200]"));
+    }
+
+    @Test
+    public void parametersAreTrimmedAndMayBeEmpty() {
+        assertArrayEquals(new String[]{"", "173.234.31.186"},
+                extract("Invalid user <*> from <*>", "Invalid user  from  173.234.31.186 "));
+    }
+
+    @Test
+    public void contentThatDoesNotFitReturnsNull() {
+        assertNull(extract("Invalid user <*> from <*>", "Accepted password for root from 1.2.3.4"));
+        assertNull(extract("Connection closed by <*> [preauth]", "Connection closed by 1.2.3.4"));
+        assertNull(extract("Received disconnect from <*>: <*>: Bye Bye", "Received disconnect from 1.2.3.4: Bye Bye"));
+        // the literal between the parameters must not overlap the last one
+        assertNull(extract("a <*> b <*>b", "a x b"));
+    }
+
+    @Test
+    public void adjacentParametersAreNotCompiled() {
+        assertNull(TemplateExtractor.compile("pam_unix(sshd:auth): <*><*>"));
+        assertEquals(2, TemplateExtractor.compile("<*> and <*>").size());
+        assertEquals(0, TemplateExtractor.compile("Bye Bye [preauth]").size());
+        assertTrue(TemplateExtractor.compile("Bye Bye [preauth]").extract("Bye Bye [preauth]").isEmpty());
+    }
+
+    @Test
+    public void templateFallsBackToTheParameterListIfTheExtractorDisagrees() {
+        Template template = new Template("E1", "Failed password for <*> from <*> port <*> ssh<*>");
+        for (int position = 0; position < 4; position++) {
+            EntityPattern parameter = new EntityPattern();
+            parameter.position = position;
+            template.parameterDict.add(parameter);
+        }
+        template.indexParameters();
+        template.compileExtractor();
+        assertNotNull(template.extractor);
+
+        // the upstream parser split the first line differently: the ParameterList is used from then on
+        String content = "Failed password for root from 5.36.59.76 port 42393 ssh2";
+        assertArrayEquals(new String[]{"root", "5.36.59.76 ", "42393", "2"},
+                template.parameters(content, "['root', '5.36.59.76 ', '42393', '2']").values());
+        assertArrayEquals(new String[]{"admin", "1.2.3.4", "22", "2"},
+                template.parameters("Failed password for admin from 1.2.3.4 port 22 ssh2",
+                        "['admin', '1.2.3.4', '22', '2']").values());
+        assertEquals(0, template.parameters(content, "").size());
+    }
+
+    @Test
+    public void templateUsesTheExtractorOnceItAgreed() {
+        Template template = new Template("E1", "Invalid user <*> from <*>");
+        for (int position = 0; position < 2; position++) {
+            EntityPattern parameter = new EntityPattern();
+            parameter.position = position;
+            template.parameterDict.add(parameter);
+        }
+        template.indexParameters();
+        template.compileExtractor();
+
+        assertArrayEquals(new String[]{"test", "1.2.3.4"},
+                template.parameters("Invalid user test from 1.2.3.4", "['test', '1.2.3.4']").values());
+        // verified, a wrong ParameterList is not looked at any more
+        assertArrayEquals(new String[]{"admin", "5.6.7.8"},
+                template.parameters("Invalid user admin from 5.6.7.8", "['x']").values());
+        // lines that do not fit fall back to their ParameterList
+        assertArrayEquals(new String[]{"x"}, template.parameters("Accepted password", "['x']").values());
+    }
+}
@@ -0,0 +1,80 @@
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class TemplateMinerTest {
+
+    private static final String[] USERS = {"admin", "webmaster", "test", "oracle", "guest", "pi", "ubnt", "support"};
+
+    @Test
+    public void repeatedLinesConvergeOnOneTemplate() {
+        TemplateMiner miner = new TemplateMiner();
+        String eventId = null;
+        LogLine line = null;
+        for (int i = 0; i < USERS.length; i++) {
+            line = miner.mine("Dec 10 06:55:" + (10 + i) + " LabSZ sshd[2420" + i + "]: Invalid user " + USERS[i]
+                    + " from 10.0.0." + i);
+            if (eventId == null)
+                eventId = line.EventId;
+            // the user name is among the routing tokens, each value still ends up in the same cluster
+            assertEquals(eventId, line.EventId);
+        }
+        assertEquals("Invalid user <*> from <*>", line.EventTemplate);
+        assertEquals("['support', '10.0.0.7']", line.ParameterList);
+        assertEquals(1, miner.size());
+    }
+
+    @Test
+    public void eventIdStaysWhileTheTemplateIsGeneralized() {
+        TemplateMiner miner = new TemplateMiner();
+        LogLine first = miner.mine("Dec 10 06:55:46 LabSZ sshd[24200]: Failed password for root from 10.0.0.1 port 22 ssh2");
+        assertEquals("Failed password for root from <*> port 22 ssh2", first.EventTemplate);
+
+        LogLine second = miner.mine("Dec 10 06:55:48 LabSZ sshd[24202]: Failed password for root from 10.0.0.2 port 4711 ssh2");
+        assertEquals(first.EventId, second.EventId);
+        assertEquals("Failed password for root from <*> port <*> ssh2", second.EventTemplate);
+        assertEquals("['10.0.0.2', '4711']", second.ParameterList);
+        assertEquals(1, miner.size());
+    }
+
+    @Test
+    public void eventIdsAreTheSameInEveryRun() {
+        String line = "Dec 10 06:55:46 LabSZ sshd[24200]: Received disconnect from 10.0.0.1: 11: Bye Bye [preauth]";
+        assertEquals(new TemplateMiner().mine(line).EventId, new TemplateMiner().mine(line).EventId);
+    }
+
+    @Test
+    public void differentLinesGetDifferentClusters() {
+        TemplateMiner miner = new TemplateMiner();
+        LogLine invalid = miner.mine("Dec 10 06:55:46 LabSZ sshd[24200]: Invalid user admin from 10.0.0.1");
+        LogLine closed = miner.mine("Dec 10 06:55:47 LabSZ sshd[24201]: Connection closed by 10.0.0.1 [preauth]");
+        assertNotEquals(invalid.EventId, closed.EventId);
+        assertEquals(2, miner.size());
+        assertNull(miner.mine("not a syslog line"));
+    }
+
+    @Test
+    public void fallbackOnlyComparesTheRecentClusters() {
+        TemplateMiner miner = new TemplateMiner(5, 0.6, 4, Collections.emptyList());
+        String first = miner.mine("Dec 10 06:55:40 LabSZ app: Alpha q r s t").EventId;
+        String second = miner.mine("Dec 10 06:55:41 LabSZ app: Alpha bb cc dd ee").EventId;
+        miner.mine("Dec 10 06:55:42 LabSZ app: Alpha ff gg hh ii");
+        String fourth = miner.mine("Dec 10 06:55:43 LabSZ app: Alpha jj kk ll mm").EventId;
+        miner.mine("Dec 10 06:55:44 LabSZ app: Alpha nn oo pp qq");
+        assertEquals(5, miner.size());
+
+        // worst case: the first cluster was not matched among the last 4 clusters starting with Alpha, a line of it
+        // routed to another leaf is not compared with it and starts a new cluster
+        LogLine evicted = miner.mine("Dec 10 06:55:45 LabSZ app: Alpha Z r s t");
+        assertNotEquals(first, evicted.EventId);
+        assertEquals(6, miner.size());
+
+        // the new cluster evicted the second one (and this line's new cluster the third), the fourth is still compared
+        assertNotEquals(second, miner.mine("Dec 10 06:55:46 LabSZ app: Alpha Y cc dd ee").EventId);
+        LogLine recent = miner.mine("Dec 10 06:55:47 LabSZ app: Alpha X kk ll mm");
+        assertEquals(fourth, recent.EventId);
+        assertEquals("Alpha <*> kk ll mm", recent.EventTemplate);
+    }
+}
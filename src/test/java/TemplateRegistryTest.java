@@ -0,0 +1,79 @@
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class TemplateRegistryTest {
+
+    private static Template template(String hash, String content, int... userPositions) {
+        Template template = new Template(null, content);
+        template.hash = hash;
+        for (int position : userPositions) {
+            EntityPattern user = new EntityPattern("User", "connectedUser", true, Pattern.compile(Main.regexUser),
+                    EnumPatternType.LogLine);
+            user.position = position;
+            template.parameterDict.add(user);
+        }
+        return template;
+    }
+
+    @Test
+    public void templatesAreFoundByHashAndEventId() {
+        TemplateRegistry registry = new TemplateRegistry();
+        Template template = template("a1", "Invalid user <*> from <*>", 0);
+        registry.add(template);
+        registry.mapEventId("OpenSSH_2k_A", "E13", "a1");
+
+        assertTrue(registry.contains("a1"));
+        assertFalse(registry.contains("b2"));
+        assertSame(template, registry.getByHash("a1"));
+        assertEquals("a1", registry.getHash("OpenSSH_2k_A", "E13"));
+        assertSame(template, registry.getByEventId("OpenSSH_2k_A", "E13"));
+        assertNull(registry.getByEventId("OpenSSH_2k_A", "E14"));
+        assertNull(registry.getByHash("b2"));
+        assertEquals(1, registry.size());
+
+        // the parameters are indexed by position when the template is added
+        assertEquals(1, template.parameters.length);
+        assertEquals("User", template.getParameter(0).className);
+        assertNull(template.getParameter(1));
+    }
+
+    @Test
+    public void readdedTemplateReplacesTheFormerOne() {
+        TemplateRegistry registry = new TemplateRegistry();
+        registry.add(template("a1", "Invalid user <*> from <*>"));
+        registry.mapEventId("OpenSSH_2k_A", "E13", "a1");
+
+        Template annotated = template("a1", "Invalid user <*> from <*>", 0, 1);
+        registry.add(annotated);
+        assertEquals(1, registry.size());
+        assertSame(annotated, registry.getByEventId("OpenSSH_2k_A", "E13"));
+        assertEquals(2, registry.getByHash("a1").parameters.length);
+    }
+
+    @Test
+    public void sourcesHaveTheirOwnEventIds() {
+        TemplateRegistry registry = new TemplateRegistry();
+        Template invalidUser = template("a1", "Invalid user <*> from <*>");
+        Template failedPassword = template("b2", "Failed password for <*> from <*>");
+        registry.add(invalidUser);
+        registry.add(failedPassword);
+        registry.mapEventId("OpenSSH_2k_A", "E1", "a1");
+        registry.mapEventId("OpenSSH_2k_B", "E1", "b2");
+        registry.mapEventId("OpenSSH_2k_B", "E2", "a1"); // the same template under another EventId
+
+        assertSame(invalidUser, registry.getByEventId("OpenSSH_2k_A", "E1"));
+        assertSame(failedPassword, registry.getByEventId("OpenSSH_2k_B", "E1"));
+        assertSame(invalidUser, registry.getByEventId("OpenSSH_2k_B", "E2"));
+        assertNull(registry.getByEventId("OpenSSH_2k_A", "E2"));
+        assertNull(registry.getHash("OpenSSH_2k_C", "E1"));
+        assertEquals(2, registry.size());
+
+        // an EventId mapped again (e.g. a mined template that was generalized) resolves to the new template
+        registry.mapEventId("OpenSSH_2k_A", "E1", "b2");
+        assertSame(failedPassword, registry.getByEventId("OpenSSH_2k_A", "E1"));
+        assertSame(failedPassword, registry.getByEventId("OpenSSH_2k_B", "E1"));
+    }
+}
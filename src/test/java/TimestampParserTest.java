@@ -0,0 +1,70 @@
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.Assert.*;
+
+public class TimestampParserTest {
+
+    private final TimestampParser parser = new TimestampParser();
+    private final int year = LocalDate.now().getYear();
+
+    private long expected(int month, int day, int hour, int minute, int second) {
+        return LocalDateTime.of(year, month, day, hour, minute, second).toEpochSecond(ZoneOffset.UTC);
+    }
+
+    @Test
+    public void parsesSyslogTimestampsOfTheCurrentYear() throws ParseException {
+        assertEquals(expected(12, 10, 6, 55, 46), parser.parse("Dec", "10", "06:55:46"));
+        assertEquals(expected(1, 1, 0, 0, 0), parser.parse("Jan", "1", "00:00:00"));
+        assertEquals(expected(12, 31, 23, 59, 59), parser.parse("Dec", "31", "23:59:59"));
+        assertEquals(expected(6, 5, 12, 0, 1), parser.parse("june", "05", "12:00:01"));
+        assertEquals(expected(3, 7, 8, 9, 10), parser.parse(new StringBuilder("MAR"), new StringBuilder("7"),
+                new StringBuilder("08:09:10")));
+    }
+
+    @Test
+    public void formatsTheLoggedWallClockTime() throws ParseException {
+        assertEquals(year + "-12-10T06:55:46", TimestampParser.format(parser.parse("Dec", "10", "06:55:46")));
+        assertEquals(year + "-01-01T00:00:00", TimestampParser.format(parser.parse("Jan", "1", "00:00:00")));
+        assertEquals("1970-01-01T00:00:00", TimestampParser.format(0));
+        assertEquals("1969-12-31T23:59:59", TimestampParser.format(-1));
+    }
+
+    @Test
+    public void lastDayOfFebruaryDependsOnTheYear() throws ParseException {
+        assertEquals(expected(2, 28, 1, 2, 3), parser.parse("Feb", "28", "01:02:03"));
+        if (LocalDate.of(year, 1, 1).isLeapYear())
+            assertEquals(expected(2, 29, 1, 2, 3), parser.parse("Feb", "29", "01:02:03"));
+        else
+            assertInvalid("Feb", "29", "01:02:03");
+    }
+
+    @Test
+    public void rejectsMalformedValues() {
+        assertInvalid("Foo", "10", "06:55:46");
+        assertInvalid("De", "10", "06:55:46");
+        assertInvalid("Dec", "", "06:55:46");
+        assertInvalid("Dec", "0", "06:55:46");
+        assertInvalid("Dec", "32", "06:55:46");
+        assertInvalid("Apr", "31", "06:55:46");
+        assertInvalid("Dec", "1x", "06:55:46");
+        assertInvalid("Dec", "10", "6:55:46");
+        assertInvalid("Dec", "10", "06-55-46");
+        assertInvalid("Dec", "10", "24:00:00");
+        assertInvalid("Dec", "10", "06:60:00");
+        assertInvalid("Dec", "10", "06:55:4a");
+    }
+
+    private void assertInvalid(String month, String day, String time) {
+        try {
+            parser.parse(month, day, time);
+            fail("parsed " + month + " " + day + " " + time);
+        } catch (ParseException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,100 @@
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.lang.CollectorStreamTriples;
+import org.apache.jena.riot.system.StreamRDF;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WindowAggregatorTest {
+
+    private static final Node CONNECTED_HOST = Vocabulary.parser("connectedHost");
+    private static final Node HOST = Vocabulary.instance("Host_1_2_3_4");
+
+    private static WindowAggregator.Line line(int lineId, long timestamp) {
+        Node entry = Vocabulary.instance("Logline_" + lineId);
+        return WindowAggregator.line("E1", timestamp, lineId, Arrays.asList(CONNECTED_HOST, HOST), null,
+                Collections.singletonList(Vocabulary.triple(entry, Vocabulary.TYPE, Vocabulary.LOG_ENTRY)));
+    }
+
+    private static List<Triple> withPredicate(Collection<Triple> triples, Node predicate) {
+        List<Triple> found = new ArrayList<>();
+        for (Triple triple : triples) {
+            if (triple.getPredicate().equals(predicate))
+                found.add(triple);
+        }
+        return found;
+    }
+
+    @Test
+    public void linesOfAWindowBecomeOneSummary() {
+        WindowAggregator aggregator = new WindowAggregator("OpenSSH", 60, true, false);
+        CollectorStreamTriples collected = new CollectorStreamTriples();
+        StreamRDF output = aggregator.output(collected);
+        output.triple(line(2, 130));
+        output.triple(line(1, 125));
+        output.triple(line(3, 179));
+        assertTrue(collected.getCollected().isEmpty()); // window still open
+
+        aggregator.flush(collected);
+        assertEquals(1, withPredicate(collected.getCollected(), Vocabulary.TYPE).size());
+        assertEquals(Vocabulary.literal(3L), withPredicate(collected.getCollected(), Vocabulary.COUNT).get(0).getObject());
+        assertEquals(Vocabulary.literal(1), withPredicate(collected.getCollected(), Vocabulary.SAMPLE_LINE_ID).get(0).getObject());
+        assertEquals(HOST, withPredicate(collected.getCollected(), CONNECTED_HOST).get(0).getObject());
+    }
+
+    @Test
+    public void laterWindowsCloseEarlierOnesInInputOrder() {
+        WindowAggregator aggregator = new WindowAggregator("OpenSSH", 60, true, false);
+        CollectorStreamTriples collected = new CollectorStreamTriples();
+        StreamRDF output = aggregator.output(collected);
+        output.triple(line(1, 0));
+        output.triple(line(2, 60)); // one window of lateness, the first window stays open
+        assertTrue(withPredicate(collected.getCollected(), Vocabulary.COUNT).isEmpty());
+
+        output.triple(line(3, 120)); // closes the first window
+        assertEquals(1, withPredicate(collected.getCollected(), Vocabulary.COUNT).size());
+
+        output.triple(line(4, 30)); // of a closed window, stays a log entry
+        assertTrue(collected.getCollected().contains(
+                Vocabulary.triple(Vocabulary.instance("Logline_4"), Vocabulary.TYPE, Vocabulary.LOG_ENTRY)));
+        assertFalse(collected.getCollected().contains(
+                Vocabulary.triple(Vocabulary.instance("Logline_1"), Vocabulary.TYPE, Vocabulary.LOG_ENTRY)));
+    }
+
+    @Test
+    public void entriesAreKeptUnlessSummariesReplaceThem() {
+        WindowAggregator aggregator = new WindowAggregator("OpenSSH", 60, false, false);
+        CollectorStreamTriples collected = new CollectorStreamTriples();
+        StreamRDF output = aggregator.output(collected);
+        output.triple(line(1, 0));
+        output.triple(line(2, LogLineBatch.NO_TIMESTAMP));
+        output.triple(Vocabulary.triple(HOST, Vocabulary.TYPE, Vocabulary.parser("Host"))); // passed on as is
+        aggregator.flush(collected);
+
+        assertEquals(4, withPredicate(collected.getCollected(), Vocabulary.TYPE).size());
+        assertEquals(Vocabulary.literal(1L), withPredicate(collected.getCollected(), Vocabulary.COUNT).get(0).getObject());
+        for (Triple triple : collected.getCollected())
+            assertFalse(triple instanceof WindowAggregator.Line);
+    }
+
+    @Test
+    public void summariesCarryTheHeadersOfTheirEntities() {
+        WindowAggregator aggregator = new WindowAggregator("OpenSSH", 60, true, true);
+        CollectorStreamTriples collected = new CollectorStreamTriples();
+        Triple label = Vocabulary.triple(HOST, Vocabulary.LABEL, Vocabulary.literal("1.2.3.4"));
+        aggregator.output(collected).triple(WindowAggregator.line("E1", 0, 1, Arrays.asList(CONNECTED_HOST, HOST),
+                Collections.singletonList(label), Collections.emptyList()));
+        aggregator.flush(collected);
+
+        List<Triple> triples = new ArrayList<>(collected.getCollected());
+        assertTrue(triples.get(0) instanceof ShardedOutput.Marker);
+        assertEquals(label, triples.get(1));
+    }
+}